@@ -3,15 +3,21 @@ package am.aua.npuzzle;
 import java.io.*;
 import java.util.*;
 import am.aua.npuzzle.core.*;
+import am.aua.npuzzle.solver.HintEngine;
 
-/** The {@code Npuzzle} class is the entry point of the 15-puzzle game.
+/** The {@code Npuzzle} class is the entry point of the N-puzzle game.
  * It is also used for testing purposes.
  */
 public class NPuzzle
 {
+    /** How long a hint waits for the search before giving up. */
+    private static final long HINT_WAIT_MILLIS = 2000;
+
     private Tiles tiles;
     private ConfigurationStore store;
-    private ArrayList<Tiles> cachedTiles;
+    private MoveJournal journal;
+    /** Searches the board being played in the background. */
+    private final HintEngine hints = new HintEngine();
 
     /**Constructor for {@code NPuzzle} that initializes the class.
      * @param tiles the game board.
@@ -19,13 +25,13 @@ public class NPuzzle
     public NPuzzle(Tiles tiles)
     {
         this.tiles = tiles;
-        cachedTiles = new ArrayList<>();
+        journal = new MoveJournal();
     }
 
     public NPuzzle(ConfigurationStore store)
     {
         this.store = store;
-        cachedTiles = new ArrayList<>();
+        journal = new MoveJournal();
     }
 
     /** Starts the game, allowing the user to enter movement commands.
@@ -49,19 +55,18 @@ public class NPuzzle
                 }
                 else
                 {
-                    try
+                    Tiles.Direction direction = Tiles.Direction.valueOf(response);
+                    if (tiles.tryMove(direction))
                     {
-                        tiles.move(Tiles.Direction.valueOf(response));
-                        cachedTiles.add(copyTiles(true));
+                        journal.record(direction, tiles);
+                        hints.retarget(tiles);
                     }
-                    catch (PositionOutOfBoardException e)
-                    {
+                    else
                         System.out.println("Move position out of board. Please try again.");
-                    }
                     print();
                     if (!tiles.isSolved())
                     {
-                        System.out.println("Please make a move by inputting UP, DOWN, LEFT, RIGHT;");
+                        System.out.println("Please make a move by inputting UP, DOWN, LEFT, RIGHT (h for a hint);");
                         System.out.println("or stop the game by inputting q: ");
                     }
                     else
@@ -74,9 +79,10 @@ public class NPuzzle
             }
             else if (response.equals("b"))
             {
-                if(tiles.getMoveCunt() > 0)
+                if(tiles != null && journal.canUndo())
                 {
-                    tiles = cachedTiles.get(tiles.getMoveCunt() - 1);
+                    journal.undo(tiles);
+                    hints.retarget(tiles);
                     print();
                 }
                 else
@@ -84,19 +90,34 @@ public class NPuzzle
             }
             else if (response.equals("f"))
             {
-                if(tiles.getMoveCunt() != cachedTiles.size()-1)
+                if(tiles != null && journal.canRedo())
                 {
-                    tiles = cachedTiles.get(tiles.getMoveCunt()+1);
+                    journal.redo(tiles);
+                    hints.retarget(tiles);
                     print();
                 }
                 else
                     System.out.println("this is the current board");
             }
+            else if (response.equals("h"))
+            {
+                if (tiles == null)
+                    System.out.println("Please select a configuration to play (l to list):");
+                else if (!HintEngine.supports(tiles))
+                    System.out.println("No hints for boards of more than " + LongTiles.MAX_CELLS + " cells.");
+                else
+                {
+                    Tiles.Direction hint = hints.hint(tiles, HINT_WAIT_MILLIS);
+                    if (hint != null)
+                        System.out.println("Hint: " + hint);
+                    else
+                        System.out.println("Still thinking, please try again in a moment.");
+                }
+            }
             else if (response.equals("l"))
             {
-                Configuration[] configs = store.getConfigurations();
                 int i = 0;
-                for (Configuration c : configs)
+                for (Configuration c : store)
                 {
                     System.out.println(i + " (" + c.getData() + ")");
                     i++;
@@ -104,15 +125,13 @@ public class NPuzzle
             }
             else if (response.startsWith("c"))
             {
-                Configuration[] configs = store.getConfigurations();
-
                 response = response.substring(1);
                 response = response.trim();
                 int integer = -1;
                 try
                 {
                     integer = Integer.parseInt(response);
-                    if(integer < 0 || integer > configs.length)
+                    if(integer < 0 || integer >= store.size())
                         throw new Exception();                      //just to avoid repetition
                 }
                 catch (Exception e)
@@ -122,9 +141,10 @@ public class NPuzzle
                     play();
                 }
 
-                Configuration config = configs[integer];
+                Configuration config = store.getConfiguration(integer);
                 tiles = new ArrayTiles(config.getData());
-                cachedTiles.add(copyTiles(false));              //adding the initial board
+                journal = new MoveJournal();                    //a new history for the new board
+                hints.retarget(tiles);                          //search while the player thinks
 
 
                 print();
@@ -135,7 +155,7 @@ public class NPuzzle
                 }
                 if (!tiles.isSolved())
                 {
-                    System.out.println("Please make a move by inputting UP, DOWN, LEFT, RIGHT;");
+                    System.out.println("Please make a move by inputting UP, DOWN, LEFT, RIGHT (h for a hint);");
                     System.out.println("or stop the game by inputting q: ");
                 }
                 else
@@ -153,43 +173,27 @@ public class NPuzzle
     public void print()
     {
         System.out.println("- " + tiles.getMoveCunt() + " move(s)");
-        for(int i = 0; i < Tiles.SIZE; i++)
+        for(int i = 0; i < tiles.getRows(); i++)
         {
-            for (int j = 0; j < Tiles.SIZE; j++)
+            for (int j = 0; j < tiles.getColumns(); j++)
                 System.out.print("-----");
 
             System.out.println("-");
 
-            for (int j = 0; j < Tiles.SIZE; j++)
+            for (int j = 0; j < tiles.getColumns(); j++)
                 if (tiles.getTile(i, j) == Tiles.EMPTY)
                     System.out.printf("|    ");
                 else
                     System.out.printf("| %2d ", tiles.getTile(i,j));
             System.out.println("|");
         }
-        for (int j = 0; j < Tiles.SIZE; j++)
+        for (int j = 0; j < tiles.getColumns(); j++)
             System.out.print("-----");
 
         System.out.println("-");
     }
 
 
-    /**Makes a copy of this Tiles object
-     * @param useCloning specifies cloning method true for cloning false for copy constructor
-     * @return new Tiles object with same data
-     * */
-    private Tiles copyTiles(boolean useCloning)
-    {
-        if (!useCloning)
-        {
-            if (tiles instanceof ArrayTiles)
-                return new ArrayTiles((ArrayTiles) tiles);
-            else if (tiles instanceof MatrixTiles)
-                return new MatrixTiles((MatrixTiles) tiles);
-        }
-        return (Tiles) tiles.clone();
-    }
-
     /**Checks for equality
      * @param other the class to check for equality
      * @return true, if both are equal, otherwise false
@@ -204,7 +208,7 @@ public class NPuzzle
         else
         {
             NPuzzle n = (NPuzzle) other;
-            return cachedTiles.equals(n.cachedTiles) && tiles.equals(n.tiles) && store.equals(n.store);
+            return journal.equals(n.journal) && tiles.equals(n.tiles) && store.equals(n.store);
         }
     }
 
@@ -214,7 +218,7 @@ public class NPuzzle
     @Override
     public String toString()
     {
-        return "NPuzzle with " + tiles + store + " and " + cachedTiles.size() + "configs";
+        return "NPuzzle with " + tiles + store + " and " + journal.size() + " moves";
     }
 
     /** Starts the game tests.
@@ -3,7 +3,7 @@ package am.aua.npuzzle.core;
 import am.aua.npuzzle.NPuzzle;
 
 /**
- * The {@code ArrayTiles} class represents the 15-puzzle game board in array form.
+ * The {@code ArrayTiles} class represents the N-puzzle game board of any size in array form.
  * It provides methods to initialize the game state.
  */
 public class ArrayTiles extends Tiles implements Cloneable
@@ -26,7 +26,7 @@ public class ArrayTiles extends Tiles implements Cloneable
     public ArrayTiles(String format)
     {
         super(format);
-        tiles = new byte[SIZE * SIZE];
+        tiles = new byte[getRows() * getColumns()];
 
         try
         {
@@ -37,7 +37,7 @@ public class ArrayTiles extends Tiles implements Cloneable
             System.exit(1);
         }
 
-        for (int i = 0; i < SIZE * SIZE; i++)
+        for (int i = 0; i < tiles.length; i++)
             if (tiles[i] == EMPTY)
                 emptyPos = i;
     }
@@ -50,9 +50,9 @@ public class ArrayTiles extends Tiles implements Cloneable
     public ArrayTiles(ArrayTiles that)
     {
         super(that);
-        tiles = new byte[SIZE * SIZE];
+        tiles = new byte[that.tiles.length];
         emptyPos = that.emptyPos;
-        for (int i = 0; i < SIZE * SIZE; i++)
+        for (int i = 0; i < tiles.length; i++)
             tiles[i] = that.tiles[i];
     }
 
@@ -69,34 +69,28 @@ public class ArrayTiles extends Tiles implements Cloneable
      * Moves corresponding tile in the specified direction (UP, DOWN, LEFT, RIGHT).
      *
      * @param direction The direction to move the empty tile.
+     * @throws PositionOutOfBoardException if there is no tile to move in that direction
      */
     @Override
     public void moveImpl(Direction direction)
     {
-        int tilePos = 0;
-        if (direction == Direction.UP)
-            tilePos = emptyPos + SIZE;
-        else if (direction == Direction.DOWN)
-            tilePos = emptyPos - SIZE;
-        else if (direction == Direction.LEFT)
-            tilePos = emptyPos + 1;
-        else if (direction == Direction.RIGHT)
-            tilePos = emptyPos - 1;
-        else
-        {
-            System.out.println("Invalid move");
-            System.exit(0);
-        }
-        int eCol = emptyPos % SIZE;
-        int eRow = (emptyPos - eCol) / SIZE;
-        int tCol = tilePos % SIZE;
-        int tRow = (tilePos - tCol) / SIZE;
-        setTile(eRow, eCol, getTile(tRow, tCol));
-        setTile(tRow, tCol, EMPTY);
+        int tilePos = neighbor(direction);
+        if (tilePos < 0)
+            throw new PositionOutOfBoardException();
+        byte tile = tiles[tilePos];
+        tiles[emptyPos] = tile;
+        tiles[tilePos] = EMPTY;
+        tileMoved(tile, tilePos, emptyPos);
         emptyPos = tilePos;
         //incrementMoveCount();
     }
 
+    @Override
+    protected int getEmptyPosition()
+    {
+        return emptyPos;
+    }
+
     /**
      * Getter for the tile value at the specified position.
      *
@@ -107,9 +101,9 @@ public class ArrayTiles extends Tiles implements Cloneable
     @Override
     public byte getTile(int row, int col)
     {
-        if (row < 0 || row >= SIZE || col < 0 || col >= SIZE)
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns())
             throw new PositionOutOfBoardException();
-        return tiles[row * SIZE + col];
+        return tiles[row * getColumns() + col];
     }
 
     /**
@@ -117,30 +111,26 @@ public class ArrayTiles extends Tiles implements Cloneable
      *
      * @param row   The row index.
      * @param col   The column index.
-     * @param value The tile value (must be between 0 and 15).
+     * @param value The tile value (must be between 0 and rows * columns - 1).
      */
     @Override
     public void setTile(int row, int col, byte value)
     {
-        if (row < 0 || row >= SIZE || col < 0 || col >= SIZE)
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns())
             throw new PositionOutOfBoardException("Invalid tile number");
-        tiles[row * SIZE + col] = value;
+        tiles[row * getColumns() + col] = value;
+        tilesChanged();
     }
 
     /**
-     * Checks if the puzzle is solved correctly.
+     * Checks if the puzzle is solved correctly, using the number of misplaced tiles kept up to date by every move.
      *
      * @return {@code true} if the puzzle is solved, otherwise {@code false}.
      */
     @Override
     public boolean isSolved()
     {
-        if (emptyPos + 1 != SIZE * SIZE)
-            return false;
-        for (int i = 0; i + 1 < SIZE * SIZE; i++)
-            if (tiles[i] != i + 1)
-                return false;
-        return true;
+        return getMisplacedCount() == 0;
     }
 
     @Override
@@ -148,8 +138,8 @@ public class ArrayTiles extends Tiles implements Cloneable
     {
         Object o = super.clone();
         ArrayTiles a = (ArrayTiles) o;
-        byte[] t = new byte[SIZE * SIZE];
-        for (int i = 0; i < SIZE * SIZE; i++)
+        byte[] t = new byte[a.tiles.length];
+        for (int i = 0; i < t.length; i++)
         {
             t[i] = a.tiles[i];
         }
@@ -171,7 +161,9 @@ public class ArrayTiles extends Tiles implements Cloneable
         else
         {
             ArrayTiles n = (ArrayTiles) other;
-            for (int i = 0; i < SIZE * SIZE; i++)
+            if (tiles.length != n.tiles.length || getColumns() != n.getColumns() || getZobristHash() != n.getZobristHash())
+                return false;
+            for (int i = 0; i < tiles.length; i++)
                 if (tiles[i] != n.tiles[i])
                     return false;
 
@@ -0,0 +1,208 @@
+package am.aua.npuzzle.core;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**The {@code BinaryConfigurationReader} class reads a binary store written by {@code BinaryConfigurationWriter}.
+ * The file is memory-mapped, so opening it costs the same for a hundred boards or a hundred million,
+ * and boards are only read when they are asked for.
+ *
+ * @see BinaryConfigurationWriter
+ */
+public class BinaryConfigurationReader implements Closeable
+{
+    /** Log2 of the number of boards in one mapped chunk (1 GiB). */
+    private static final int CHUNK_BITS = 27;
+
+    /** The mapped file. */
+    private final FileChannel channel;
+    /** Number of rows of the boards. */
+    private final int rows;
+    /** Number of columns of the boards. */
+    private final int cols;
+    /** Number of boards. */
+    private final long count;
+    /** The boards, split in chunks because a single mapping is limited to 2 GiB. */
+    private final LongBuffer[] chunks;
+    /** The solvability bits, or {@code null} if the file has none. */
+    private final LongBuffer solvable;
+
+    /**Opens and maps a binary store.
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be read or is not a binary store
+     */
+    public BinaryConfigurationReader(Path file) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try
+        {
+            if (channel.size() < BinaryConfigurationWriter.HEADER)
+                throw new IOException(file + " is not a binary configuration store");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryConfigurationWriter.HEADER)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != BinaryConfigurationWriter.MAGIC)
+                throw new IOException(file + " is not a binary configuration store");
+            if (header.getShort() != BinaryConfigurationWriter.VERSION)
+                throw new IOException(file + " has an unsupported binary configuration version");
+            rows = header.get();
+            cols = header.get();
+            int flags = header.getInt();
+            header.getInt();
+            count = header.getLong();
+            if (rows * cols > LongTiles.MAX_CELLS || (count > 0 && (rows < 2 || cols < 2)))
+                throw new IOException(file + " holds " + rows + "x" + cols + " boards");
+
+            long boardsEnd = BinaryConfigurationWriter.HEADER + 8 * count;
+            long bitsEnd = (flags & BinaryConfigurationWriter.SOLVABILITY) != 0 ? boardsEnd + 8 * ((count + 63) >>> 6) : boardsEnd;
+            if (channel.size() < bitsEnd)
+                throw new IOException(file + " is truncated");
+
+            chunks = new LongBuffer[(int) ((count + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++)
+            {
+                long first = (long) i << CHUNK_BITS;
+                long boards = Math.min(1L << CHUNK_BITS, count - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, BinaryConfigurationWriter.HEADER + 8 * first, 8 * boards)
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+            solvable = bitsEnd == boardsEnd ? null
+                    : channel.map(FileChannel.MapMode.READ_ONLY, boardsEnd, bitsEnd - boardsEnd)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**Checks whether a file starts like a binary store.
+     *
+     * @param file the file to check
+     * @return {@code true} if the file has the binary store magic number
+     */
+    public static boolean isBinary(Path file)
+    {
+        try (FileChannel c = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && c.read(magic) >= 0)
+                ;
+            return !magic.hasRemaining() && magic.getInt(0) == BinaryConfigurationWriter.MAGIC;
+        }
+        catch (IOException | InvalidPathException e)
+        {
+            return false;
+        }
+    }
+
+    /**Getter for the number of rows of the boards.
+     *
+     * @return rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**Getter for the number of columns of the boards.
+     *
+     * @return columns
+     */
+    public int getColumns()
+    {
+        return cols;
+    }
+
+    /**Getter for the number of boards.
+     *
+     * @return the count
+     */
+    public long size()
+    {
+        return count;
+    }
+
+    /**Getter for a packed board, without copying or parsing anything.
+     *
+     * @param index the position of the board
+     * @return the board with the {@code i}-th number of its text form in the nibble {@code i}
+     * @throws IndexOutOfBoundsException if there is no such board
+     */
+    public long getPacked(long index)
+    {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + count + " configurations");
+        return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & ((1L << CHUNK_BITS) - 1)));
+    }
+
+    /**Checks whether the file has precomputed solvability bits.
+     *
+     * @return {@code true} if {@link #isSolvable(long)} does not compute anything
+     */
+    public boolean hasSolvability()
+    {
+        return solvable != null;
+    }
+
+    /**Checks whether a board is solvable, using the precomputed bit when there is one.
+     *
+     * @param index the position of the board
+     * @return {@code true} if the board can be solved
+     */
+    public boolean isSolvable(long index)
+    {
+        if (solvable == null)
+            return LongTiles.isSolvable(getPacked(index), rows, cols);
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + count + " configurations");
+        return (solvable.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    /**Getter for a board as a configuration.
+     *
+     * @param index the position of the board
+     * @return the configuration in the text form
+     */
+    public Configuration getConfiguration(long index)
+    {
+        long board = getPacked(index);
+        StringBuilder data = new StringBuilder(3 * rows * cols);
+        for (int i = 0; i < rows * cols; i++)
+        {
+            if (i > 0)
+                data.append(i % cols == 0 ? " : " : " ");
+            data.append(board >>> (i << 2) & 0xF);
+        }
+        try
+        {
+            return new Configuration(data.toString());
+        }
+        catch (ConfigurationFormatException e)
+        {
+            throw new IllegalStateException(e);        //the data is never empty
+        }
+    }
+
+    /**Closes the file. Boards read afterwards still come from the mappings, which live until they are collected.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Binary configuration reader of " + count + " " + rows + "x" + cols + " configurations";
+    }
+}
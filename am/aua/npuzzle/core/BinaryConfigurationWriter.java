@@ -0,0 +1,232 @@
+package am.aua.npuzzle.core;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**The {@code BinaryConfigurationWriter} class writes configurations in the compact binary store format.
+ * <p>
+ * The file starts with a 32-byte little-endian header: the magic number {@code NPZB}, a 2-byte version,
+ * one byte each for the number of rows and columns, 4 bytes of flags, 4 reserved bytes,
+ * the 8-byte number of boards and 8 more reserved bytes. Then every board takes 8 bytes,
+ * the {@code i}-th number of its text form in the nibble {@code i}. If the {@code SOLVABILITY} flag
+ * is set, the boards are followed by one bit per board telling whether it is solvable.
+ *
+ * @see BinaryConfigurationReader
+ */
+public class BinaryConfigurationWriter implements Closeable
+{
+    /** First four bytes of a binary store, "NPZB". */
+    static final int MAGIC = 0x425A504E;
+    /** Version of the file layout. */
+    static final short VERSION = 1;
+    /** Size of the header in bytes. */
+    static final int HEADER = 32;
+    /** Flag telling that a solvability bit set follows the boards. */
+    static final int SOLVABILITY = 1;
+
+    /** The file being written. */
+    private final FileChannel channel;
+    /** Boards waiting to be written. */
+    private final ByteBuffer buffer;
+    /** Whether solvability bits are written. */
+    private final boolean withSolvability;
+    /** Number of rows of the boards, 0 until the first configuration is written. */
+    private int rows;
+    /** Number of columns of the boards, 0 until the first configuration is written. */
+    private int cols;
+    /** One bit per board, set if the board is solvable. */
+    private long[] solvable;
+    /** Number of boards written so far. */
+    private long count;
+
+    /**Creates a binary store, replacing the file if it exists.
+     * The dimensions of the boards are those of the first configuration written.
+     *
+     * @param file            the file to write
+     * @param withSolvability whether to precompute the solvability of every board
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryConfigurationWriter(Path file, boolean withSolvability) throws IOException
+    {
+        this(file, 0, 0, withSolvability);
+    }
+
+    /**Creates a binary store of boards with the given dimensions, replacing the file if it exists.
+     *
+     * @param file            the file to write
+     * @param rows            number of rows of the boards
+     * @param cols            number of columns of the boards
+     * @param withSolvability whether to precompute the solvability of every board
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryConfigurationWriter(Path file, int rows, int cols, boolean withSolvability) throws IOException
+    {
+        if (rows * cols > LongTiles.MAX_CELLS)
+            throw new IllegalArgumentException("A board of " + rows + "x" + cols + " does not fit in 8 bytes");
+        this.rows = rows;
+        this.cols = cols;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        this.withSolvability = withSolvability;
+        solvable = new long[16];
+        buffer.position(HEADER);                        //the header is written on close, when the count is known
+    }
+
+    /**Packs the text form of a configuration, checking it on the way.
+     *
+     * @param config the configuration
+     * @return the board with the {@code i}-th number in the nibble {@code i}
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the numbers are not a valid board
+     */
+    public static long pack(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        byte[] cells = config.cells();
+        if (cells.length > LongTiles.MAX_CELLS)
+            throw new ConfigurationFormatException("Invalid configuration format: a board of " + cells.length + " cells does not fit in 8 bytes.");
+        long board = 0;
+        for (int i = 0; i < cells.length; i++)
+            board |= (long) cells[i] << (i << 2);
+        return board;
+    }
+
+    /**Appends a packed board.
+     *
+     * @param board the board with the {@code i}-th number of its text form in the nibble {@code i}
+     * @throws IOException if writing fails
+     */
+    public void write(long board) throws IOException
+    {
+        if (rows == 0)
+            throw new IllegalStateException("The dimensions of the boards are not known yet");
+        if (!buffer.hasRemaining())
+            flush();
+        buffer.putLong(board);
+        if (withSolvability)
+        {
+            int word = (int) (count >>> 6);
+            if (word == solvable.length)
+                solvable = Arrays.copyOf(solvable, solvable.length * 2);
+            if (LongTiles.isSolvable(board, rows, cols))
+                solvable[word] |= 1L << count;
+        }
+        count++;
+    }
+
+    /**Appends a configuration.
+     *
+     * @param config the configuration
+     * @throws IOException                   if writing fails
+     * @throws ConfigurationFormatException  if the data is malformed or the board has other dimensions than the store
+     * @throws InvalidConfigurationException if the numbers are not a valid board
+     */
+    public void write(Configuration config) throws IOException, ConfigurationFormatException, InvalidConfigurationException
+    {
+        long board = pack(config);
+        if (rows == 0)
+        {
+            rows = config.getRows();
+            cols = config.getColumns();
+        }
+        else if (rows != config.getRows() || cols != config.getColumns())
+            throw new ConfigurationFormatException("Invalid configuration format: " + config.getRows() + "x" + config.getColumns()
+                    + " configuration in a store of " + rows + "x" + cols + " boards.");
+        write(board);
+    }
+
+    /**Getter for the number of boards written so far.
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**Writes the buffered boards to the file.
+     *
+     * @throws IOException if writing fails
+     */
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**Writes the solvability bits and the header, then closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if (withSolvability)
+                for (int i = 0; i < (count + 63) >>> 6; i++)
+                {
+                    if (!buffer.hasRemaining())
+                        flush();
+                    buffer.putLong(solvable[i]);
+                }
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).put((byte) rows).put((byte) cols)
+                    .putInt(withSolvability ? SOLVABILITY : 0).putInt(0).putLong(count).putLong(0);
+            header.flip();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Binary configuration writer with " + count + " configurations";
+    }
+
+    /**Converts a text store (URL or file) into a binary store.
+     * Configurations that are not valid are reported and skipped.
+     *
+     * @param args command-line arguments: text source, output file and optionally {@code --solvability}
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("--solvability")))
+        {
+            System.out.println("Usage: java am.aua.npuzzle.core.BinaryConfigurationWriter <path/url to store> <output file> [--solvability]");
+            return;
+        }
+        try (Stream<Configuration> configs = ConfigurationStore.stream(args[0]);
+             BinaryConfigurationWriter writer = new BinaryConfigurationWriter(Paths.get(args[1]), args.length == 3))
+        {
+            for (Configuration c : (Iterable<Configuration>) configs::iterator)
+            {
+                try
+                {
+                    writer.write(c);
+                }
+                catch (ConfigurationFormatException | InvalidConfigurationException e)
+                {
+                    System.out.println(e.getMessage());
+                }
+            }
+            System.out.println(writer.getCount() + " configurations written to " + args[1]);
+        }
+    }
+}
@@ -1,11 +1,27 @@
 package am.aua.npuzzle.core;
 
-/** The {@code Configuration} class is the configurator of the 15-puzzle game. This class is immutable
+import am.aua.npuzzle.metrics.ParseEvent;
+
+import java.util.Arrays;
+
+/** The {@code Configuration} class is the configurator of the N-puzzle game.
+ * Its data never changes; the parsed tiles are cached on first use and safely published,
+ * so instances can be shared between threads.
+ * The dimensions of the board are those of the data: one row per colon-separated group of numbers.
 */
 public class Configuration
 {
     /** The variable to store imputed game state. */
     private final String data;
+    /** Number of rows, known once the data is parsed. */
+    private int rows;
+    /** Number of columns, known once the data is parsed. */
+    private int cols;
+    /** The parsed tiles in row-major order, or {@code null} until the data is first parsed.
+     * Volatile and written after the other parsed fields, so a thread reading it non-null sees them too. */
+    private volatile byte[] cells;
+    /** Zobrist hash of the tiles, set when the data is parsed. */
+    private long hash;
 
     /**
      * Constructor to initialize the data
@@ -27,7 +43,12 @@ public class Configuration
      */
     public Configuration (Configuration configuration)
     {
+        byte[] parsed = configuration.cells;      //read first, so the other parsed fields are those of the same parse
         this.data = configuration.data;
+        this.rows = configuration.rows;
+        this.cols = configuration.cols;
+        this.hash = configuration.hash;
+        this.cells = parsed;
     }
 
     /** Getter for the data String.
@@ -38,34 +59,128 @@ public class Configuration
         return data;
     }
 
+    /** Getter for the number of rows, parsing the data the first time.
+     * @return The number of rows.
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public int getRows() throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        parse();
+        return rows;
+    }
+
+    /** Getter for the number of columns, parsing the data the first time.
+     * @return The number of columns.
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public int getColumns() throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        parse();
+        return cols;
+    }
+
     /**
-     * For a given object of type Tiles, updates its contents using the instance variable
+     * Getter for the tiles, parsing the data the first time.
+     *
+     * @return a copy of the tiles in row-major order
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public byte[] getCells() throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        return cells().clone();
+    }
+
+    /**
+     * Getter for the 64-bit Zobrist hash of the tiles, parsing the data the first time.
+     * It is the hash of a {@code Tiles} initialised with this configuration.
+     *
+     * @return the hash
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     * @see Zobrist
+     */
+    public long getZobristHash() throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        parse();
+        return hash;
+    }
+
+    /**
+     * For a given object of type Tiles, updates its contents using the instance variable.
+     * The data is parsed and checked in a single pass the first time, the tiles are reused afterwards.
      *
      * @param tiles game bord
+     * @throws ConfigurationFormatException  if the data is malformed or does not have the dimensions of the board
+     * @throws InvalidConfigurationException if the tiles are not a valid board
      */
     public void initialise(Tiles tiles) throws ConfigurationFormatException, InvalidConfigurationException
     {
-        String[] rows = data.split(": ");
-        if (rows.length != Tiles.SIZE)
-            throw new ConfigurationFormatException("Invalid configuration format: Incorrect number of rows in configuration (found " + rows.length + ").");
-        for (int i = 0; i < Tiles.SIZE; i++)
+        byte[] parsed = cells();
+        if (tiles.getRows() != rows || tiles.getColumns() != cols)
+            throw new ConfigurationFormatException("Invalid configuration format: " + rows + "x" + cols
+                    + " configuration for a " + tiles.getRows() + "x" + tiles.getColumns() + " board.");
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                tiles.setTile(i, j, parsed[i * cols + j]);
+    }
+
+    /**
+     * Getter for the parsed tiles, parsing the data the first time.
+     *
+     * @return the tiles in row-major order, not to be modified
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    byte[] cells() throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        parse();
+        return cells;
+    }
+
+    /**
+     * Parses the data unless it was already parsed, as a Flight Recorder {@code ParseEvent}.
+     */
+    private void parse() throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        if (cells != null)
+            return;
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        try
         {
-            String[] values = rows[i].split(" ");
-            if (values.length != Tiles.SIZE)
-                throw new ConfigurationFormatException("Invalid configuration format: Incorrect number of columns in configuration (found " + values.length + ").");
-            try
-            {
-                for (int j = 0; j < Tiles.SIZE; j++)
-                    tiles.setTile(j, i, Byte.parseByte(values[j]));
-            } catch (NumberFormatException e)
+            ConfigurationParser.parse(this);
+        }
+        finally
+        {
+            if (event.shouldCommit())
             {
-                throw new ConfigurationFormatException("Invalid configuration format: Malformed configuration '" + data + "'.");
+                event.data = data;
+                event.valid = cells != null;
+                event.commit();
             }
         }
-        tiles.ensureValidity();
     }
 
-    /**Checks for equality
+    /**
+     * Keeps the result of parsing the data. Called only by {@code ConfigurationParser}.
+     *
+     * @param rows  number of rows
+     * @param cols  number of columns
+     * @param cells the tiles in row-major order
+     */
+    void parsed(int rows, int cols, byte[] cells)
+    {
+        this.rows = rows;
+        this.cols = cols;
+        this.hash = Zobrist.hash(cells);
+        this.cells = cells;                 //volatile and written last: publishes the dimensions and the hash
+    }
+
+    /**Checks for equality: valid configurations are equal if they describe the same board,
+     * however the numbers are spaced, others if they have the same data.
      * @param other the class to check for equality
      * @return true if both are equal, otherwise false
      * */
@@ -79,7 +194,33 @@ public class Configuration
         else
         {
             Configuration c = (Configuration) other;
-            return data.equals(c.data);
+            if (data.equals(c.data))
+                return true;
+            try
+            {
+                byte[] mine = cells(), theirs = c.cells();
+                return hash == c.hash && cols == c.cols && Arrays.equals(mine, theirs);
+            }
+            catch (ConfigurationFormatException | InvalidConfigurationException e)
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return the hash code of the board for valid configurations, of the data otherwise
+     * */
+    @Override
+    public int hashCode()
+    {
+        try
+        {
+            return Zobrist.fold(getZobristHash());
+        }
+        catch (ConfigurationFormatException | InvalidConfigurationException e)
+        {
+            return data.hashCode();
         }
     }
 
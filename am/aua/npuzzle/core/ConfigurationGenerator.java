@@ -0,0 +1,332 @@
+package am.aua.npuzzle.core;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**The {@code ConfigurationGenerator} class produces random solvable configurations, for load tests and benchmark corpora.
+ * <p>
+ * Boards are either uniform over all the solvable boards or the end of a random walk of a given number of moves
+ * from the solved board. A uniform board is a Fisher-Yates shuffle of the solved one; every swap of two different
+ * cells flips the parity of the permutation, so the parity is known without counting inversions, and if it does not
+ * match the distance of the empty tile from its goal cell two tiles are swapped. That maps the unsolvable boards
+ * one-to-one onto the solvable ones, so nothing is rejected and the result stays uniform.
+ * <p>
+ * Board {@code i} is drawn from its own {@code SplittableRandom} seeded from the generator seed and {@code i},
+ * so streams can be parallel and still give exactly the same boards in the same order for the same seed.
+ */
+public class ConfigurationGenerator
+{
+    /** Number of boards generated at a time before being written. */
+    private static final int CHUNK = 1 << 16;
+    /** Odd constant spreading the indices over the seeds; not the gamma of {@code SplittableRandom}, whose streams
+     * would then be the same stream shifted by one value from one index to the next. */
+    private static final long STRIDE = 0xD1342543DE82EF95L;
+
+    /** Number of rows. */
+    private final int rows;
+    /** Number of columns. */
+    private final int cols;
+    /** The seed of the whole sequence. */
+    private final long seed;
+    /** The moves possible from every cell. */
+    private final NeighborTable neighbors;
+
+    /**Creates a generator.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param seed the seed, the same seed giving the same boards
+     */
+    public ConfigurationGenerator(int rows, int cols, long seed)
+    {
+        if (rows < 2 || cols < 2 || rows * cols > ConfigurationParser.MAX_CELLS)
+            throw new IllegalArgumentException("Invalid board dimensions " + rows + "x" + cols);
+        this.rows = rows;
+        this.cols = cols;
+        this.seed = seed;
+        this.neighbors = NeighborTable.of(rows, cols);
+    }
+
+    /**Makes a board uniformly at random among the solvable ones.
+     *
+     * @param index the number of the board in the sequence
+     * @return the tiles in row-major order
+     */
+    public byte[] board(long index)
+    {
+        SplittableRandom random = random(index);
+        int n = rows * cols;
+        byte[] cells = goal(n);
+        int parity = 0;
+        for (int i = n - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            if (j != i)
+            {
+                byte t = cells[i];
+                cells[i] = cells[j];
+                cells[j] = t;
+                parity ^= 1;
+            }
+        }
+        int blank = 0;
+        while (cells[blank] != Tiles.EMPTY)
+            blank++;
+        int distance = (rows - 1 - blank / cols) + (cols - 1 - blank % cols);
+        if (parity != (distance & 1))
+        {
+            int a = blank == 0 ? 1 : 0, b = blank <= 1 ? 2 : 1;    //two cells without the empty tile
+            byte t = cells[a];
+            cells[a] = cells[b];
+            cells[b] = t;
+        }
+        return cells;
+    }
+
+    /**Makes a board by a random walk from the solved board, never undoing the previous move.
+     * The walk is {@code depth} moves long, so the board is at most {@code depth} moves from the goal.
+     *
+     * @param index the number of the board in the sequence
+     * @param depth number of moves of the walk
+     * @return the tiles in row-major order
+     */
+    public byte[] scrambled(long index, int depth)
+    {
+        SplittableRandom random = random(index);
+        int n = rows * cols;
+        byte[] cells = goal(n);
+        int blank = n - 1;
+        int last = -1;
+        int[] choices = new int[4];
+        for (int m = 0; m < depth; m++)
+        {
+            int count = 0;
+            for (int dir = 0; dir < 4; dir++)
+                if (neighbors.neighbor(blank, dir) >= 0 && (last < 0 || dir != (last ^ 1)))    //ordinals pair up as opposites
+                    choices[count++] = dir;
+            int dir = choices[random.nextInt(count)];
+            int from = neighbors.neighbor(blank, dir);
+            cells[blank] = cells[from];
+            cells[from] = Tiles.EMPTY;
+            blank = from;
+            last = dir;
+        }
+        return cells;
+    }
+
+    /**Streams configurations in order.
+     *
+     * @param count number of configurations
+     * @param depth length of the random walks, or a negative number for uniform boards
+     * @return the configurations, in parallel if asked to, always in the same order
+     */
+    public Stream<Configuration> stream(long count, int depth)
+    {
+        return LongStream.range(0, count).mapToObj(i -> configuration(cells(i, depth)));
+    }
+
+    /**Streams packed boards in order, for boards of at most 16 cells.
+     *
+     * @param count number of boards
+     * @param depth length of the random walks, or a negative number for uniform boards
+     * @return the boards with the tile of cell {@code i} in the nibble {@code i}
+     */
+    public LongStream packed(long count, int depth)
+    {
+        checkPackable();
+        return LongStream.range(0, count).map(i -> pack(cells(i, depth)));
+    }
+
+    /**Getter for the number of rows.
+     *
+     * @return rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**Getter for the number of columns.
+     *
+     * @return columns
+     */
+    public int getColumns()
+    {
+        return cols;
+    }
+
+    private void checkPackable()
+    {
+        if (rows * cols > LongTiles.MAX_CELLS)
+            throw new IllegalStateException("A board of " + rows + "x" + cols + " does not fit in a long");
+    }
+
+    private byte[] cells(long index, int depth)
+    {
+        return depth < 0 ? board(index) : scrambled(index, depth);
+    }
+
+    private SplittableRandom random(long index)
+    {
+        return new SplittableRandom(mix64(seed ^ (index + 1) * STRIDE));
+    }
+
+    /**The 64-bit finaliser of MurmurHash3, so that neighbouring indices give unrelated seeds.
+     */
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static byte[] goal(int n)
+    {
+        byte[] cells = new byte[n];
+        for (int i = 0; i + 1 < n; i++)
+            cells[i] = (byte) (i + 1);
+        return cells;
+    }
+
+    private static long pack(byte[] cells)
+    {
+        long board = 0;
+        for (int i = 0; i < cells.length; i++)
+            board |= (long) cells[i] << (i << 2);
+        return board;
+    }
+
+    /**Formats tiles as the text form of a configuration.
+     *
+     * @param cells the tiles in row-major order
+     * @return the text, e.g. "1 2 3 : 4 5 6 : 7 8 0"
+     */
+    private String format(byte[] cells)
+    {
+        StringBuilder data = new StringBuilder(3 * cells.length);
+        for (int i = 0; i < cells.length; i++)
+        {
+            if (i > 0)
+                data.append(i % cols == 0 ? " : " : " ");
+            data.append(cells[i]);
+        }
+        return data.toString();
+    }
+
+    private Configuration configuration(byte[] cells)
+    {
+        try
+        {
+            Configuration c = new Configuration(format(cells));
+            c.parsed(rows, cols, cells);                //already known to be valid
+            return c;
+        }
+        catch (ConfigurationFormatException e)
+        {
+            throw new IllegalStateException(e);        //the data is never empty
+        }
+    }
+
+    /**Writes configurations to a text store, one per line.
+     *
+     * @param file  the file to write
+     * @param count number of configurations
+     * @param depth length of the random walks, or a negative number for uniform boards
+     * @throws IOException if writing fails
+     */
+    public void writeText(Path file, long count, int depth) throws IOException
+    {
+        try (BufferedWriter out = Files.newBufferedWriter(file))
+        {
+            for (long first = 0; first < count; first += CHUNK)
+            {
+                String[] lines = LongStream.range(first, Math.min(count, first + CHUNK)).parallel()
+                        .mapToObj(i -> format(cells(i, depth)))
+                        .toArray(String[]::new);
+                for (String line : lines)
+                {
+                    out.write(line);
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    /**Writes boards of at most 16 cells to a binary store.
+     *
+     * @param file  the file to write
+     * @param count number of boards
+     * @param depth length of the random walks, or a negative number for uniform boards
+     * @throws IOException if writing fails
+     */
+    public void writeBinary(Path file, long count, int depth) throws IOException
+    {
+        checkPackable();
+        try (BinaryConfigurationWriter writer = new BinaryConfigurationWriter(file, rows, cols, false))
+        {
+            for (long first = 0; first < count; first += CHUNK)
+            {
+                long[] boards = LongStream.range(first, Math.min(count, first + CHUNK)).parallel()
+                        .map(i -> pack(cells(i, depth)))
+                        .toArray();
+                for (long board : boards)
+                    writer.write(board);
+            }
+        }
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Generator of " + rows + "x" + cols + " configurations with seed " + seed;
+    }
+
+    /**Writes random solvable configurations to a text or binary store.
+     * Boards are generated in parallel a chunk at a time and written in order.
+     *
+     * @param args command-line arguments: rows, columns, count, seed, output file,
+     *             then optionally {@code --depth <moves>} and {@code --binary}
+     * @throws IOException if writing fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int depth = -1;
+        boolean binary = false;
+        ConfigurationGenerator generator;
+        long count;
+        try
+        {
+            if (args.length < 5)
+                throw new IllegalArgumentException();
+            for (int i = 5; i < args.length; i++)
+            {
+                if (args[i].equals("--depth"))
+                    depth = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--binary"))
+                    binary = true;
+                else
+                    throw new IllegalArgumentException(args[i]);
+            }
+            generator = new ConfigurationGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[3]));
+            count = Long.parseLong(args[2]);
+        }
+        catch (RuntimeException e)
+        {
+            System.out.println("Usage: java am.aua.npuzzle.core.ConfigurationGenerator <rows> <columns> <count> <seed> <output file> [--depth <moves>] [--binary]");
+            return;
+        }
+
+        Path output = Paths.get(args[4]);
+        long begin = System.nanoTime();
+        if (binary)
+            generator.writeBinary(output, count, depth);
+        else
+            generator.writeText(output, count, depth);
+        System.out.println(count + " configurations written to " + output + " in " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+    }
+}
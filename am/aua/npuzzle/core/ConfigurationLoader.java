@@ -0,0 +1,513 @@
+package am.aua.npuzzle.core;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+import am.aua.npuzzle.metrics.Metrics;
+
+/**The {@code ConfigurationLoader} class fetches configuration sources from URLs with {@code java.net.http.HttpClient},
+ * keeping a copy of every source in a cache directory.
+ * <p>
+ * Requests ask for gzip and, when a copy is cached, carry its {@code ETag} and {@code Last-Modified} so an unchanged
+ * source is answered with {@code 304 Not Modified} and read from the copy. A new body is decompressed and handed
+ * to the reader as its bytes arrive, so configurations are parsed while the rest is still being downloaded, and it is
+ * written to the cache at the same time; the copy replaces the old one only once the body was read to the end.
+ * If the server cannot be reached or answers with an error, a cached copy is used instead, however old.
+ * Connecting and waiting for the response headers both time out, and so does the body when no data arrives
+ * for a while: if nothing was read yet the cached copy is read instead, otherwise the read fails with an
+ * {@code HttpTimeoutException} and {@link #load(String)} or a {@code ConfigurationStore} start again from the copy.
+ * Every use of a cached copy instead of the source is counted by {@code Metrics} and kept by {@link #getLastFallback()}.
+ *
+ * @author Armen Balagyozyan
+ */
+public class ConfigurationLoader
+{
+    /** Time allowed to connect. */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    /** Time allowed for the response headers once connected. */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    /** Time allowed without any data while reading the body. */
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    /** The thread aborting the bodies that stall. */
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, r ->
+    {
+        Thread thread = new Thread(r, "configuration-loader-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** The loader used by {@code ConfigurationStore}, created on first use. */
+    private static ConfigurationLoader shared;
+
+    /** The client, shared by all the requests. */
+    private final HttpClient client;
+    /** The directory of the cached copies. */
+    private final Path cacheDirectory;
+    /** Time allowed without any data while reading the body. */
+    private final Duration readTimeout;
+    /** Why a cached copy was last used instead of the source, or {@code null}. */
+    private volatile IOException lastFallback;
+
+    static
+    {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
+    /**Creates a loader with its own client.
+     *
+     * @param cacheDirectory the directory of the cached copies, created when needed
+     */
+    public ConfigurationLoader(Path cacheDirectory)
+    {
+        this(HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build(), cacheDirectory);
+    }
+
+    /**Creates a loader.
+     *
+     * @param client         the client sending the requests
+     * @param cacheDirectory the directory of the cached copies, created when needed
+     */
+    public ConfigurationLoader(HttpClient client, Path cacheDirectory)
+    {
+        this(client, cacheDirectory, READ_TIMEOUT);
+    }
+
+    /**Creates a loader.
+     *
+     * @param client         the client sending the requests
+     * @param cacheDirectory the directory of the cached copies, created when needed
+     * @param readTimeout    time allowed without any data while reading a body
+     */
+    public ConfigurationLoader(HttpClient client, Path cacheDirectory, Duration readTimeout)
+    {
+        this.client = client;
+        this.cacheDirectory = cacheDirectory;
+        this.readTimeout = readTimeout;
+    }
+
+    /**Getter for the loader shared by the whole program, caching in {@code ~/.npuzzle/cache}
+     * unless the system property {@code npuzzle.cache} names another directory.
+     *
+     * @return the shared loader
+     */
+    public static synchronized ConfigurationLoader getShared()
+    {
+        if (shared == null)
+        {
+            String directory = System.getProperty("npuzzle.cache");
+            shared = new ConfigurationLoader(directory != null ? Paths.get(directory)
+                    : Paths.get(System.getProperty("user.home"), ".npuzzle", "cache"));
+        }
+        return shared;
+    }
+
+    /**Getter for the reason a cached copy was last used instead of a source.
+     *
+     * @return the failure of the source, or {@code null} if every source was read
+     */
+    public IOException getLastFallback()
+    {
+        return lastFallback;
+    }
+
+    /**Opens a source, waiting for the response headers only.
+     * Reading fails with an {@code HttpTimeoutException} if the body stalls after part of it was read.
+     *
+     * @param url the URL of the source
+     * @return a reader of the source, reading the body as it arrives
+     * @throws IOException if the source cannot be fetched and has no cached copy
+     */
+    public Reader open(String url) throws IOException
+    {
+        try
+        {
+            return receive(url, client.send(request(url), HttpResponse.BodyHandlers.ofInputStream()));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        }
+        catch (IOException e)
+        {
+            return fallback(url, e);
+        }
+    }
+
+    /**Loads a source without blocking the caller: the configurations are parsed on the client's threads
+     * as the body arrives.
+     *
+     * @param url the URL of the source
+     * @return the store, completed exceptionally with an {@code UncheckedIOException}
+     *         if the source cannot be fetched and has no cached copy
+     */
+    public CompletableFuture<ConfigurationStore> load(String url)
+    {
+        HttpRequest request;
+        try
+        {
+            request = request(url);
+        }
+        catch (IOException e)
+        {
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        }
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .handle((response, failure) ->
+                {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure;
+                    try (Reader reader = cause == null ? receive(url, response)
+                            : fallback(url, cause instanceof IOException ? (IOException) cause
+                                : new IOException(cause.getMessage(), cause)))
+                    {
+                        return new ConfigurationStore(reader);
+                    }
+                    catch (HttpTimeoutException e)
+                    {
+                        try (Reader reader = fallback(url, e))      //the body stalled half way
+                        {
+                            return new ConfigurationStore(reader);
+                        }
+                        catch (IOException f)
+                        {
+                            throw new UncheckedIOException(f);
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**Builds the request of a source, conditional if a copy is cached.
+     *
+     * @throws IOException if the URL is malformed
+     */
+    private HttpRequest request(String url) throws IOException
+    {
+        HttpRequest.Builder builder;
+        try
+        {
+            builder = HttpRequest.newBuilder(new URI(url));
+        }
+        catch (URISyntaxException | IllegalArgumentException e)
+        {
+            throw new MalformedURLException("Invalid URL " + url);
+        }
+        builder.timeout(REQUEST_TIMEOUT).header("Accept-Encoding", "gzip");
+        Properties meta = readMeta(url);
+        if (meta != null)
+        {
+            String etag = meta.getProperty("etag"), lastModified = meta.getProperty("last-modified");
+            if (etag != null)
+                builder.header("If-None-Match", etag);
+            if (lastModified != null)
+                builder.header("If-Modified-Since", lastModified);
+        }
+        return builder.GET().build();
+    }
+
+    /**Turns a response into a reader: the cached copy for 304, the body for 200.
+     *
+     * @throws IOException if the response is an error and there is no cached copy
+     */
+    private Reader receive(String url, HttpResponse<InputStream> response) throws IOException
+    {
+        int status = response.statusCode();
+        if (status == 304 && Files.exists(bodyFile(url)))
+        {
+            response.body().close();
+            return cached(url);
+        }
+        if (status != 200)
+        {
+            response.body().close();
+            return fallback(url, new IOException("HTTP status " + status + " for " + url));
+        }
+        InputStream body = response.body();
+        if (response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip"))
+            body = new GZIPInputStream(body);
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        response.headers().firstValue("ETag").ifPresent(v -> meta.setProperty("etag", v));
+        response.headers().firstValue("Last-Modified").ifPresent(v -> meta.setProperty("last-modified", v));
+        return new InputStreamReader(new CachingInputStream(body, url, meta), StandardCharsets.UTF_8);
+    }
+
+    /**Reads the cached copy of a source after the source itself could not be read.
+     *
+     * @param url   the URL of the source
+     * @param cause why the source could not be read, thrown if there is no copy either
+     * @return a reader of the cached copy
+     * @throws IOException the cause if there is no copy
+     */
+    Reader fallback(String url, IOException cause) throws IOException
+    {
+        if (!Files.exists(bodyFile(url)))
+            throw cause;
+        fellBack(cause);
+        return cached(url);
+    }
+
+    private void fellBack(IOException cause)
+    {
+        lastFallback = cause;
+        Metrics.cacheFallback();
+    }
+
+    private Reader cached(String url) throws IOException
+    {
+        return Files.newBufferedReader(bodyFile(url), StandardCharsets.UTF_8);
+    }
+
+    /**Reads the validators of the cached copy of a source.
+     *
+     * @return the properties, or {@code null} if there is no copy
+     */
+    private Properties readMeta(String url)
+    {
+        Path metaFile = metaFile(url);
+        if (!Files.exists(metaFile) || !Files.exists(bodyFile(url)))
+            return null;
+        Properties meta = new Properties();
+        try (Reader in = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8))
+        {
+            meta.load(in);
+            return meta;
+        }
+        catch (IOException e)
+        {
+            return null;                                //fetched again unconditionally
+        }
+    }
+
+    private Path bodyFile(String url)
+    {
+        return cacheDirectory.resolve(key(url) + ".txt");
+    }
+
+    private Path metaFile(String url)
+    {
+        return cacheDirectory.resolve(key(url) + ".properties");
+    }
+
+    /**Names the cached copy of a URL.
+     *
+     * @return the SHA-256 of the URL in hexadecimal
+     */
+    private static String key(String url)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(2 * digest.length);
+            for (byte b : digest)
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);        //every Java platform has SHA-256
+        }
+    }
+
+    /**The {@code CachingInputStream} class copies the body it reads into a temporary file,
+     * which becomes the cached copy when the body was read to the end and the stream is closed.
+     * A watchdog closes the body when a read waits longer than the read timeout; the stream then goes on with
+     * the cached copy if nothing was read yet, and fails with an {@code HttpTimeoutException} otherwise.
+     */
+    private class CachingInputStream extends FilterInputStream
+    {
+        private final String url;
+        private final Properties meta;
+        /** The copy being written, or {@code null} if the cache directory cannot be written. */
+        private Path temporary;
+        private OutputStream copy;
+        /** Whether the end of the body was reached. */
+        private boolean complete;
+        /** Number of bytes read from the body. */
+        private long delivered;
+        /** When the read in progress started, 0 if there is none. */
+        private volatile long readStarted;
+        /** Whether the watchdog closed the body. */
+        private volatile boolean timedOut;
+        /** The periodic check of the watchdog. */
+        private final ScheduledFuture<?> watch;
+
+        CachingInputStream(InputStream body, String url, Properties meta)
+        {
+            super(body);
+            this.url = url;
+            this.meta = meta;
+            try
+            {
+                Files.createDirectories(cacheDirectory);
+                temporary = Files.createTempFile(cacheDirectory, key(url), ".part");
+                copy = new BufferedOutputStream(Files.newOutputStream(temporary));
+            }
+            catch (IOException e)
+            {
+                temporary = null;                       //loading works without the cache
+            }
+            long period = Math.max(10, readTimeout.toMillis() / 4);
+            watch = WATCHDOG.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        /**Closes the body if the read in progress has waited too long. Runs on the watchdog thread.
+         */
+        private void check()
+        {
+            long started = readStarted;
+            if (started == 0 || timedOut || System.nanoTime() - started < readTimeout.toNanos())
+                return;
+            timedOut = true;
+            try
+            {
+                in.close();                             //wakes the blocked read up
+            }
+            catch (IOException e)
+            {
+                //the read fails anyway
+            }
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n;
+            readStarted = System.nanoTime();
+            try
+            {
+                n = timedOut ? -1 : super.read(b, off, len);
+            }
+            catch (IOException e)
+            {
+                if (!timedOut)
+                    throw e;
+                n = -1;
+            }
+            finally
+            {
+                readStarted = 0;
+            }
+            if (timedOut)
+                return stalled(b, off, len);
+            if (n > 0)
+                delivered += n;
+            if (n < 0)
+                complete = true;
+            else if (copy != null)
+            {
+                try
+                {
+                    copy.write(b, off, n);
+                }
+                catch (IOException e)
+                {
+                    abandon();
+                }
+            }
+            return n;
+        }
+
+        /**Goes on with the cached copy after the body stalled, if nothing was read from the body.
+         *
+         * @throws HttpTimeoutException if part of the body was read or there is no cached copy
+         */
+        private int stalled(byte[] b, int off, int len) throws IOException
+        {
+            watch.cancel(false);
+            abandon();
+            HttpTimeoutException timeout = new HttpTimeoutException("No data from " + url + " for "
+                    + readTimeout.toMillis() + " ms after " + delivered + " bytes");
+            if (delivered > 0 || !Files.exists(bodyFile(url)))
+                throw timeout;
+            fellBack(timeout);
+            in = Files.newInputStream(bodyFile(url));
+            timedOut = false;
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            watch.cancel(false);
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                if (copy != null)
+                {
+                    try
+                    {
+                        copy.close();
+                        if (complete)
+                        {
+                            Files.move(temporary, bodyFile(url), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                            try (Writer out = Files.newBufferedWriter(metaFile(url), StandardCharsets.UTF_8))
+                            {
+                                meta.store(out, "N-Puzzle configuration source");
+                            }
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        //the copy is only an optimisation
+                    }
+                    finally
+                    {
+                        abandon();
+                    }
+                }
+            }
+        }
+
+        /**Stops copying and deletes the partial copy, if it was not moved in place.
+         */
+        private void abandon()
+        {
+            try
+            {
+                if (copy != null)
+                    copy.close();
+                Files.deleteIfExists(temporary);
+            }
+            catch (IOException e)
+            {
+                //a stray temporary file is harmless
+            }
+            copy = null;
+        }
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Configuration loader caching in " + cacheDirectory;
+    }
+}
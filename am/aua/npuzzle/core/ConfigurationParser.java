@@ -0,0 +1,102 @@
+package am.aua.npuzzle.core;
+
+import java.util.Arrays;
+
+/** The {@code ConfigurationParser} class reads the text form of a configuration
+ * (e.g. "15 2 1 12 : 8 5 6 11 : 4 9 10 7 : 3 14 13 0") in a single pass over its characters.
+ * Numbers are separated by spaces and rows by colons; the first row fixes the number of columns.
+ * The format, the range of every tile and duplicate tiles are all checked while scanning,
+ * without splitting the text into strings.
+ */
+final class ConfigurationParser
+{
+    /** Largest number of cells, since tiles are bytes. */
+    static final int MAX_CELLS = Byte.MAX_VALUE + 1;
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private ConfigurationParser()
+    {
+    }
+
+    /**
+     * Parses the data of a configuration and stores the dimensions and tiles in it.
+     *
+     * @param config the configuration to parse
+     * @throws ConfigurationFormatException  if the text is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    static void parse(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        String data = config.getData();
+        int length = data.length();
+        byte[] cells = new byte[Tiles.SIZE * Tiles.SIZE];
+        long foundLow = 0, foundHigh = 0;           //one bit per tile value, 0 to 127
+        int max = 0;
+        int count = 0;
+        int rows = 0, cols = -1, col = 0;
+        int i = 0;
+        while (true)
+        {
+            while (i < length && Character.isWhitespace(data.charAt(i)))
+                i++;
+            if (i == length || data.charAt(i) == ':')
+            {
+                if (cols < 0)
+                    cols = col;
+                if (col != cols || col == 0)
+                    throw new ConfigurationFormatException("Invalid configuration format: Incorrect number of columns in configuration (found " + col + ").");
+                rows++;
+                col = 0;
+                if (i == length)
+                    break;
+                i++;
+                continue;
+            }
+
+            boolean negative = data.charAt(i) == '-';
+            if (negative)
+                i++;
+            int start = i;
+            int value = 0;
+            while (i < length && data.charAt(i) >= '0' && data.charAt(i) <= '9')
+            {
+                if (value < 1000)                    //anything that long is out of range anyway
+                    value = value * 10 + (data.charAt(i) - '0');
+                i++;
+            }
+            if (i == start || (i < length && !Character.isWhitespace(data.charAt(i)) && data.charAt(i) != ':'))
+                throw new ConfigurationFormatException("Invalid configuration format: Malformed configuration '" + data + "'.");
+            if (cols >= 0 && col >= cols)
+                throw new ConfigurationFormatException("Invalid configuration format: Incorrect number of columns in configuration (found " + (col + 1) + ").");
+            if (negative)
+                value = -value;
+
+            if (value < 0 || value >= MAX_CELLS || count == MAX_CELLS)
+                throw new InvalidConfigurationException("Invalid configuration: incorrect tile value " + value + ".");
+            long bit = 1L << value;
+            if (((value < 64 ? foundLow : foundHigh) & bit) != 0)
+                throw new InvalidConfigurationException(value == Tiles.EMPTY
+                        ? "Invalid configuration: multiple empty spaces."
+                        : "Invalid configuration: multiple tiles with the value" + value + ".");
+            if (value < 64)
+                foundLow |= bit;
+            else
+                foundHigh |= bit;
+            max = Math.max(max, value);
+
+            if (count == cells.length)
+                cells = Arrays.copyOf(cells, Math.min(2 * cells.length, MAX_CELLS));
+            cells[count++] = (byte) value;
+            col++;
+        }
+        if (rows < 2)
+            throw new ConfigurationFormatException("Invalid configuration format: Incorrect number of rows in configuration (found " + rows + ").");
+        if (cols < 2)
+            throw new ConfigurationFormatException("Invalid configuration format: Incorrect number of columns in configuration (found " + cols + ").");
+        if (max >= count)                           //no duplicates, so every value below count is there
+            throw new InvalidConfigurationException("Invalid configuration: incorrect tile value " + max + ".");
+        config.parsed(rows, cols, count == cells.length ? cells : Arrays.copyOf(cells, count));
+    }
+}
@@ -1,21 +1,36 @@
 package am.aua.npuzzle.core;
 
+import am.aua.npuzzle.metrics.LoadEvent;
+import am.aua.npuzzle.metrics.Metrics;
+
 import java.io.*;
 import java.net.*;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.*;
 import java.util.*;
+import java.util.stream.*;
 
 /**The {@code ConfigurationStore} class handles loading and validating
  * N-Puzzle configurations from a file, URL, or Reader source.
+ * Sources too big for the heap can be read line by line with {@link #stream(String)},
+ * and binary stores written by {@code BinaryConfigurationWriter} are memory-mapped instead of loaded.
+ * Every non-empty line of a text source is one configuration, in order: lines that are not valid configurations
+ * are reported and counted as rejected but kept, so that positions match the lines of the source.
+ * Loading a store is reported as a Flight Recorder {@code LoadEvent}, and every line read is counted by {@code Metrics}.
  *
  * @author Armen Balagyozyan
  */
-public class ConfigurationStore
+public class ConfigurationStore implements Iterable<Configuration>
 {
     /** Array storing all the configurations as strings.*/
     private ArrayList<Configuration> storedConfigs;
+    /** The mapped binary store, or {@code null} if the configurations were loaded from text.*/
+    private BinaryConfigurationReader binary;
+    /** Number of lines of the source that were not valid configurations.*/
+    private int rejected;
 
     /**Loads configurations from a given source (URL or file path).
-     * Automatically detects whether the source is a URL or a file.
+     * Automatically detects whether the source is a URL, a binary store or a text file.
      *
      * @param source URL or file path to load configurations from
      * @throws IOException if there is an error loading the data
@@ -23,14 +38,25 @@ public class ConfigurationStore
     public ConfigurationStore(String source) throws IOException
     {
         storedConfigs = new ArrayList<>();
-        if (source.startsWith("http://") || source.startsWith("https://"))
-        {
-            loadFromURL(source);
-        }
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        if (isBinary(source))
+            binary = new BinaryConfigurationReader(Paths.get(source));
         else
-        {
-            loadFromDisk(source);
-        }
+            try (Reader r = open(source))
+            {
+                load(r);
+            }
+            catch (HttpTimeoutException e)
+            {
+                storedConfigs.clear();                  //the body of the URL stalled half way: start again from the copy
+                rejected = 0;
+                try (Reader r = ConfigurationLoader.getShared().fallback(source, e))
+                {
+                    load(r);
+                }
+            }
+        commit(event, source);
     }
 
     /**Loads configurations from a {@code Reader} input stream.
@@ -41,29 +67,150 @@ public class ConfigurationStore
     public ConfigurationStore(Reader source) throws IOException
     {
         storedConfigs = new ArrayList<>();
+        LoadEvent event = new LoadEvent();
+        event.begin();
         load(source);
+        commit(event, null);
     }
 
-    public Configuration[] getConfigurations()
+    /**Reports the end of loading to Flight Recorder.
+     *
+     * @param event  the event begun before loading
+     * @param source the file or URL, or {@code null} for a reader
+     */
+    private void commit(LoadEvent event, String source)
     {
-        Configuration [] result = new Configuration[storedConfigs.size()];
-        for (int i = 0; i < storedConfigs.size(); i++)
+        if (event.shouldCommit())
         {
-            try
-            {
-                result[i] = new Configuration(storedConfigs.get(i).getData());
-            }
-            catch (ConfigurationFormatException e)
-            {
-                System.out.println(e.getMessage());
-            }
-
+            event.source = source;
+            event.configurations = size();
+            event.rejected = rejected;
+            event.commit();
         }
+    }
+
+    /**Getter for the number of lines of the source that were not valid configurations.
+     *
+     * @return the lines rejected while loading, 0 for a binary store
+     */
+    public int getRejectedCount()
+    {
+        return rejected;
+    }
+
+    /**Getter for all the configurations.
+     * Prefer {@link #getConfiguration(int)} or iterating over the store, which do not copy anything.
+     *
+     * @return a new array with the configurations
+     */
+    public Configuration[] getConfigurations()
+    {
+        if (binary == null)
+            return storedConfigs.toArray(new Configuration[0]);
+        Configuration[] result = new Configuration[size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = binary.getConfiguration(i);
         return result;
     }
 
+    /**Getter for a single configuration.
+     *
+     * @param index the position of the configuration in the source
+     * @return the configuration
+     * @throws IndexOutOfBoundsException if there is no such configuration
+     */
+    public Configuration getConfiguration(int index)
+    {
+        if (binary != null)
+            return binary.getConfiguration(index);
+        return storedConfigs.get(index);
+    }
+
+    /**Getter for the number of configurations.
+     *
+     * @return number of stored configurations
+     */
+    public int size()
+    {
+        if (binary != null)
+            return (int) Math.min(binary.size(), Integer.MAX_VALUE);
+        return storedConfigs.size();
+    }
+
+    /**Iterates over the configurations in the order of the source.
+     *
+     * @return a read-only iterator
+     */
+    @Override
+    public Iterator<Configuration> iterator()
+    {
+        if (binary != null)
+            return LongStream.range(0, binary.size()).mapToObj(binary::getConfiguration).iterator();
+        return Collections.unmodifiableList(storedConfigs).iterator();
+    }
+
+    /**Reads configurations lazily from a given source (URL or file path).
+     * Lines are parsed only when the stream asks for them, so memory use does not depend on the size of the source.
+     * The stream must be closed to release the source.
+     *
+     * @param source URL or file path to read configurations from
+     * @return the configurations in the order of the source
+     * @throws IOException if the source cannot be opened
+     */
+    public static Stream<Configuration> stream(String source) throws IOException
+    {
+        if (isBinary(source))
+        {
+            BinaryConfigurationReader reader = new BinaryConfigurationReader(Paths.get(source));
+            return LongStream.range(0, reader.size())
+                    .mapToObj(reader::getConfiguration)
+                    .onClose(() ->
+                    {
+                        try
+                        {
+                            reader.close();
+                        }
+                        catch (IOException e)
+                        {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        }
+        return stream(open(source));
+    }
+
+    /**Reads configurations lazily from a {@code Reader}.
+     * Closing the stream closes the reader.
+     *
+     * @param source Reader to read configurations from
+     * @return the configurations in the order of the source
+     */
+    public static Stream<Configuration> stream(Reader source)
+    {
+        BufferedReader s = new BufferedReader(source);
+        return s.lines()
+                .map(data ->
+                {
+                    Configuration c = parse(data);
+                    if (c != null)
+                        validate(c);
+                    return c;
+                })
+                .filter(Objects::nonNull)
+                .onClose(() ->
+                {
+                    try
+                    {
+                        s.close();
+                    }
+                    catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
     /**Loads and validates puzzle configurations from the provided Reader.
-     * Supports up to 1000 configurations.
      *
      * @param r Reader input stream
      * @throws IOException if an I/O error occurs
@@ -75,60 +222,102 @@ public class ConfigurationStore
 
         while ((data = s.readLine()) != null)
         {
+            Configuration c = parse(data);
+            if (c == null)
+                continue;
+            storedConfigs.add(c);
+            if (!validate(c))
+                rejected++;
+        }
+    }
 
-            String[] rows = data.split(" : ");
-            if (rows.length != Tiles.SIZE)
-                System.out.println("Invalid configuration format: \t Incorrect number of rows in configuration");
-
-            for (int i = 0; i < Tiles.SIZE; i++)
-            {
-                String[] elements = rows[i].split(" ");
-                if (elements.length != Tiles.SIZE)
-                    System.out.println("Invalid configuration format: \t Incorrect number of columns in configuration");
-                for (int j = 0; j < Tiles.SIZE; j++)
-                {
-                    if (Byte.parseByte(elements[j]) < 0 || Byte.parseByte(elements[j]) >= Tiles.SIZE * Tiles.SIZE)
-                        System.out.println("The numbers are too big/small.");
-                }
-            }
-
-            try
-            {
-                storedConfigs.add(new Configuration(data));
-            }
-            catch (ConfigurationFormatException e)
-            {
-                System.out.println("Invalid configuration format");
-            }
-
-            //System.out.println(data);
+    /**Reads a single line of a source.
+     * Empty lines are skipped; any other line is kept, even if it is not a valid configuration,
+     * so that every configuration keeps the position of its line and using an invalid one reports why it is invalid.
+     *
+     * @param data the line
+     * @return the configuration, or {@code null} if the line is empty
+     */
+    private static Configuration parse(String data)
+    {
+        try
+        {
+            return new Configuration(data);
+        }
+        catch (ConfigurationFormatException e)
+        {
+            return null;
+        }
+    }
 
+    /**Validates a configuration read from a source, counting it as loaded or rejected.
+     * Configurations that are not valid are reported.
+     *
+     * @param c the configuration
+     * @return {@code true} if it is valid
+     */
+    private static boolean validate(Configuration c)
+    {
+        try
+        {
+            c.cells();
+            Metrics.configuration(true);
+            return true;
+        }
+        catch (ConfigurationFormatException | InvalidConfigurationException e)
+        {
+            Metrics.configuration(false);
+            System.out.println(e.getMessage());
+            return false;
         }
     }
 
+    /**Checks whether a source is a binary store on disk.
+     *
+     * @param source URL or file path
+     * @return {@code true} if the source is a file with the binary store magic number
+     */
+    private static boolean isBinary(String source)
+    {
+        return !source.startsWith("http://") && !source.startsWith("https://")
+                && BinaryConfigurationReader.isBinary(Paths.get(source));
+    }
 
-    /**Loads configurations from a URL.
+    /**Opens a source, detecting whether it is a URL or a file.
+     *
+     * @param source URL or file path
+     * @return a reader of the source
+     * @throws IOException if the source cannot be opened
+     */
+    private static Reader open(String source) throws IOException
+    {
+        if (source.startsWith("http://") || source.startsWith("https://"))
+            return openURL(source);
+        else
+            return openDisk(source);
+    }
+
+    /**Opens configurations from a URL through the shared {@code ConfigurationLoader},
+     * which reads them as they arrive and keeps a copy for the next time.
      *
      * @param url the URL string
+     * @return a reader of the URL
      * @throws IOException if unable to read from the URL
      */
-    private void loadFromURL(String url) throws IOException
+    private static Reader openURL(String url) throws IOException
     {
-        URL destination = new URL(url);
-        URLConnection conn = destination.openConnection();
-        Reader r = new InputStreamReader(conn.getInputStream());
-        load(r);
+        return ConfigurationLoader.getShared().open(url);
     }
 
-    /**Loads configurations from a file on disk.
-     * Looks inside the path: "am/aua/NPuzzle/{filename}"
+    /**Opens configurations from a file on disk.
      *
      * @param filename name of the file containing configurations
+     * @return a reader of the file
      * @throws IOException if unable to read from the file
      */
-    private void loadFromDisk(String filename) throws IOException {
-        Reader r = new FileReader(filename);
-        load(r);
+    private static Reader openDisk(String filename) throws IOException
+    {
+        return new FileReader(filename);
     }
 
 
@@ -165,7 +354,14 @@ public class ConfigurationStore
         else
         {
             ConfigurationStore cs = (ConfigurationStore) other;
-            return storedConfigs.equals(cs.storedConfigs);
+            if (binary == null && cs.binary == null)
+                return storedConfigs.equals(cs.storedConfigs);
+            if (size() != cs.size())
+                return false;
+            for (int i = 0; i < size(); i++)
+                if (!getConfiguration(i).equals(cs.getConfiguration(i)))
+                    return false;
+            return true;
         }
     }
 
@@ -175,7 +371,7 @@ public class ConfigurationStore
     @Override
     public String toString()
     {
-        return "Configuration store containing " + storedConfigs.size() + " configurations";
+        return "Configuration store containing " + size() + " configurations";
     }
 
 
@@ -0,0 +1,298 @@
+package am.aua.npuzzle.core;
+
+/**
+ * The {@code LongTiles} class represents an N-puzzle game board of up to 16 cells packed into a single {@code long}.
+ * It is the fast implementation for the common 3x3 and 4x4 boards.
+ * Every cell takes 4 bits (a nibble), cell {@code row * columns + col} being stored in the bits
+ * {@code 4 * (row * columns + col)} to {@code 4 * (row * columns + col) + 3}.
+ * <p>
+ * The packed board is the only state of its own: the empty cell is found in it when needed.
+ * An object still carries what every {@code Tiles} keeps, such as its configuration, its dimensions
+ * and the statistics updated by every move, so the 8-byte form of a board is {@link #getPacked()},
+ * which binary configuration stores hold without any object around it, as {@code TilesBatch} holds its nibbles.
+ */
+public class LongTiles extends Tiles implements Cloneable
+{
+    /**
+     * The packed form of the solved 4x4 board: tile {@code i + 1} in the nibble {@code i} and the empty tile in the last one.
+     */
+    public static final long SOLVED = 0x0FEDCBA987654321L;
+    /**
+     * Largest number of cells that fit in a {@code long}.
+     */
+    public static final int MAX_CELLS = 16;
+    /**
+     * Mask of a single nibble.
+     */
+    private static final long NIBBLE = 0xFL;
+    /**
+     * The lowest bit of every nibble.
+     */
+    private static final long LOW_BITS = 0x1111111111111111L;
+    /**
+     * The packed solved board for every number of cells.
+     */
+    private static final long[] GOALS = new long[MAX_CELLS + 1];
+
+    static
+    {
+        for (int cells = 1; cells <= MAX_CELLS; cells++)
+            GOALS[cells] = SOLVED & (-1L >>> ((MAX_CELLS - cells) << 2)) & ~(NIBBLE << ((cells - 1) << 2));
+    }
+
+    /**
+     * The packed puzzle grid.
+     */
+    private long board;
+
+    /**
+     * Constructor of {@code LongTiles} from an input string.
+     * The input must be in the form: "15 2 1 12 : 8 5 6 11 : 4 9 10 7 : 3 14 13 0".
+     *
+     * @param format The string representing the initial state of the puzzle.
+     */
+    public LongTiles(String format)
+    {
+        super(format);
+        if (getRows() * getColumns() > MAX_CELLS)
+        {
+            System.out.println("A board of " + getRows() + "x" + getColumns() + " does not fit in a long.");
+            System.exit(1);
+        }
+
+        try
+        {
+            getConfiguration().initialise(this);
+        } catch (Exception e)
+        {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a copy of an existing {@code LongTiles}.
+     *
+     * @param that The puzzle instance to copy.
+     */
+    public LongTiles(LongTiles that)
+    {
+        super(that);
+        board = that.board;
+    }
+
+    /**
+     * Constructor of {@code LongTiles} from a configuration.
+     * @param config Configuration to use
+     */
+    public LongTiles(Configuration config)
+    {
+        this(config.getData());
+    }
+
+    /**
+     * Getter for the packed board.
+     *
+     * @return the board with one tile per nibble
+     */
+    public long getPacked()
+    {
+        return board;
+    }
+
+    /**
+     * Getter for the packed solved board.
+     *
+     * @param cells number of cells, at most {@link #MAX_CELLS}
+     * @return tile {@code i + 1} in the nibble {@code i} and the empty tile in the last used one
+     */
+    public static long goal(int cells)
+    {
+        return GOALS[cells];
+    }
+
+    /**
+     * Getter for the bits of the cells of a packed board.
+     *
+     * @param cells number of cells, at most {@link #MAX_CELLS}
+     * @return the mask of the nibbles of the cells
+     */
+    public static long mask(int cells)
+    {
+        return cells == MAX_CELLS ? -1L : (1L << (cells << 2)) - 1;
+    }
+
+    /**
+     * Finds the empty cell of a packed board without a loop: a nibble is empty if none of its four bits is set.
+     *
+     * @param board the packed board
+     * @param mask  the bits of the cells of the board, see {@link #mask(int)}
+     * @return the empty cell
+     */
+    public static int emptyCell(long board, long mask)
+    {
+        long any = (board | board >>> 1 | board >>> 2 | board >>> 3) & LOW_BITS;
+        return Long.numberOfTrailingZeros(~any & LOW_BITS & mask) >>> 2;
+    }
+
+    /**
+     * Checks if a packed 4x4 board is solvable.
+     *
+     * @param board a board with one tile per nibble
+     * @return {@code true} if the board can be solved
+     */
+    public static boolean isSolvable(long board)
+    {
+        return isSolvable(board, SIZE, SIZE);
+    }
+
+    /**
+     * Checks if a packed board is solvable, comparing the parity of its permutation
+     * with the distance of the empty tile from its goal cell.
+     *
+     * @param board a board with one tile per nibble
+     * @param rows  number of rows
+     * @param cols  number of columns
+     * @return {@code true} if the board can be solved
+     */
+    public static boolean isSolvable(long board, int rows, int cols)
+    {
+        int cells = rows * cols;
+        int seen = 0;
+        int parity = 0;
+        int blank = 0;
+        for (int i = 0; i < cells; i++)
+        {
+            if ((board >>> (i << 2) & NIBBLE) == EMPTY)
+                blank = i;
+            if ((seen & (1 << i)) != 0)
+                continue;
+            int length = 0;
+            for (int j = i; (seen & (1 << j)) == 0; length++)
+            {
+                seen |= 1 << j;
+                int tile = (int) (board >>> (j << 2) & NIBBLE);
+                j = tile == EMPTY ? cells - 1 : tile - 1;
+            }
+            parity ^= (length - 1) & 1;
+        }
+        int distance = (rows - 1 - blank / cols) + (cols - 1 - blank % cols);
+        return parity == (distance & 1);
+    }
+
+    /**
+     * Moves corresponding tile in the specified direction (UP, DOWN, LEFT, RIGHT).
+     * The tile is swapped with the empty nibble, so the move is a table lookup and a single XOR.
+     *
+     * @param direction The direction to move the empty tile.
+     * @throws PositionOutOfBoardException if there is no tile to move in that direction
+     */
+    @Override
+    public void moveImpl(Direction direction)
+    {
+        int tilePos = neighbor(direction);
+        if (tilePos < 0)
+            throw new PositionOutOfBoardException();
+
+        int empty = getEmptyPosition();
+        long value = nibble(tilePos);
+        board ^= (value << (tilePos << 2)) | (value << (empty << 2));
+        tileMoved((byte) value, tilePos, empty);
+    }
+
+    @Override
+    protected int getEmptyPosition()
+    {
+        return emptyCell(board, mask(getRows() * getColumns()));
+    }
+
+    /**
+     * Getter for the tile value at the specified position.
+     *
+     * @param row The row of element.
+     * @param col The column of element.
+     * @return The tile value at the specified position.
+     */
+    @Override
+    public byte getTile(int row, int col)
+    {
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns())
+            throw new PositionOutOfBoardException("Invalid tile number");
+        return (byte) nibble(row * getColumns() + col);
+    }
+
+    /**
+     * Setter for a tile value at the specified position if the value is valid and unique.
+     *
+     * @param row   The row index.
+     * @param col   The column index.
+     * @param value The tile value (must be between 0 and 15).
+     * @throws IllegalArgumentException if the value does not fit into a nibble
+     */
+    @Override
+    public void setTile(int row, int col, byte value)
+    {
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns())
+            throw new PositionOutOfBoardException("Invalid tile number");
+        if (value < 0 || value > NIBBLE)
+            throw new IllegalArgumentException("Invalid configuration: incorrect tile value " + value + ".");
+        int shift = (row * getColumns() + col) << 2;
+        board = (board & ~(NIBBLE << shift)) | ((long) value << shift);
+        tilesChanged();
+    }
+
+    /**
+     * Checks if the puzzle is solved correctly.
+     *
+     * @return {@code true} if the puzzle is solved, otherwise {@code false}.
+     */
+    @Override
+    public boolean isSolved()
+    {
+        return board == GOALS[getRows() * getColumns()];
+    }
+
+    /**
+     * Reads the value of a single cell.
+     *
+     * @param pos The position of the cell.
+     * @return The tile value in that cell.
+     */
+    private long nibble(int pos)
+    {
+        return (board >>> (pos << 2)) & NIBBLE;
+    }
+
+    @Override
+    public Object clone()
+    {
+        return super.clone();               //the board is a primitive, nothing to deep copy
+    }
+
+    /**Checks for equality
+     * @param other the class to check for equality
+     * @return true if both are equal, otherwise false
+     * */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other == null)
+            return false;
+        else if (getClass() != other.getClass())
+            return false;
+        else
+        {
+            LongTiles n = (LongTiles) other;
+            return board == n.board && getColumns() == n.getColumns() && getRows() == n.getRows();
+        }
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Long tiles with empty position " + getEmptyPosition() + " and tiles " + super.toString();
+    }
+}
@@ -1,7 +1,7 @@
 package am.aua.npuzzle.core;
 
 /**
- * The {@code MatrixTiles} class represents the 15-puzzle game board in matrix form.
+ * The {@code MatrixTiles} class represents the N-puzzle game board of any size in matrix form.
  * It provides methods to initialize the game state.
  */
 public class MatrixTiles extends Tiles implements Cloneable
@@ -30,7 +30,7 @@ public class MatrixTiles extends Tiles implements Cloneable
     public MatrixTiles(String format)
     {
         super(format);
-        tiles = new byte[SIZE][SIZE];
+        tiles = new byte[getRows()][getColumns()];
 
         try
         {
@@ -42,8 +42,8 @@ public class MatrixTiles extends Tiles implements Cloneable
         }
 
 
-        for (int i = 0; i < SIZE; i++)
-            for (int j = 0; j < SIZE; j++)
+        for (int i = 0; i < getRows(); i++)
+            for (int j = 0; j < getColumns(); j++)
                 if (tiles[i][j] == EMPTY)
                 {
                     emptyCol = j;
@@ -59,11 +59,11 @@ public class MatrixTiles extends Tiles implements Cloneable
     public MatrixTiles(MatrixTiles that)
     {
         super(that);
-        tiles = new byte[SIZE][SIZE];
+        tiles = new byte[getRows()][getColumns()];
         this.emptyCol = that.emptyCol;
         this.emptyRow = that.emptyRow;
-        for (int i = 0; i < SIZE; i++)
-            for (int j = 0; j < SIZE; j++)
+        for (int i = 0; i < getRows(); i++)
+            for (int j = 0; j < getColumns(); j++)
                 this.tiles[i][j] = that.tiles[i][j];
     }
 
@@ -80,39 +80,30 @@ public class MatrixTiles extends Tiles implements Cloneable
      * Moves corresponding tile in the specified direction (UP, DOWN, LEFT, RIGHT).
      *
      * @param direction The direction to move the empty tile.
+     * @throws PositionOutOfBoardException if there is no tile to move in that direction
      */
     @Override
     public void moveImpl(Direction direction)
     {
-        int tileCol = 0, tileRow = 0;
-        if (direction == Direction.UP)
-        {
-            tileCol = emptyCol;
-            tileRow = emptyRow + 1;
-        } else if (direction == Direction.DOWN)
-        {
-            tileCol = emptyCol;
-            tileRow = emptyRow - 1;
-        } else if (direction == Direction.LEFT)
-        {
-            tileCol = emptyCol + 1;
-            tileRow = emptyRow;
-        } else if (direction == Direction.RIGHT)
-        {
-            tileCol = emptyCol - 1;
-            tileRow = emptyRow;
-        } else
-        {
-            System.out.println("Invalid move");
-            System.exit(0);
-        }
-        setTile(emptyRow, emptyCol, getTile(tileRow, tileCol));
-        setTile(tileRow, tileCol, EMPTY);
+        int tilePos = neighbor(direction);
+        if (tilePos < 0)
+            throw new PositionOutOfBoardException();
+        int tileRow = tilePos / getColumns(), tileCol = tilePos % getColumns();
+        byte tile = tiles[tileRow][tileCol];
+        tiles[emptyRow][emptyCol] = tile;
+        tiles[tileRow][tileCol] = EMPTY;
+        tileMoved(tile, tilePos, emptyRow * getColumns() + emptyCol);
         emptyCol = tileCol;
         emptyRow = tileRow;
         //incrementMoveCount();
     }
 
+    @Override
+    protected int getEmptyPosition()
+    {
+        return emptyRow * getColumns() + emptyCol;
+    }
+
     /**
      * Getter for the tile value at the specified position.
      *
@@ -123,7 +114,7 @@ public class MatrixTiles extends Tiles implements Cloneable
     @Override
     public byte getTile(int row, int col)
     {
-        if (row < 0 || row >= SIZE || col < 0 || col >= SIZE)
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns())
             throw new PositionOutOfBoardException("Invalid tile number");
         return tiles[row][col];
     }
@@ -133,32 +124,26 @@ public class MatrixTiles extends Tiles implements Cloneable
      *
      * @param row   The row index.
      * @param col   The column index.
-     * @param value The tile value (must be between 0 and 15).
+     * @param value The tile value (must be between 0 and rows * columns - 1).
      */
     @Override
     public void setTile(int row, int col, byte value)
     {
-        if (row < 0 || row >= SIZE || col < 0 || col >= SIZE)
+        if (row < 0 || row >= getRows() || col < 0 || col >= getColumns())
             throw new PositionOutOfBoardException("Invalid tile number");
         tiles[row][col] = value;
+        tilesChanged();
     }
 
     /**
-     * Checks if the puzzle is solved correctly.
+     * Checks if the puzzle is solved correctly, using the number of misplaced tiles kept up to date by every move.
      *
      * @return {@code true} if the puzzle is solved, otherwise {@code false}.
      */
     @Override
     public boolean isSolved()
     {
-        if (emptyCol + 1 != SIZE || emptyRow + 1 != SIZE)
-            return false;
-        for (int i = 0; i < SIZE; i++)
-            for (int j = 0; j < SIZE; j++)
-                if ((i + 1 < SIZE || j + 1 < SIZE)
-                        && tiles[i][j] != i * SIZE + j + 1)
-                    return false;
-        return true;
+        return getMisplacedCount() == 0;
     }
 
     @Override
@@ -166,9 +151,9 @@ public class MatrixTiles extends Tiles implements Cloneable
     {
         Object o = super.clone();
         MatrixTiles m = (MatrixTiles) o;
-        byte[][] t = new byte[SIZE][SIZE];
-        for (int i = 0; i < SIZE; i++)
-            for (int j = 0; j < SIZE; j++)
+        byte[][] t = new byte[getRows()][getColumns()];
+        for (int i = 0; i < getRows(); i++)
+            for (int j = 0; j < getColumns(); j++)
             {
                 t[i][j] = m.tiles[i][j];
 
@@ -191,8 +176,10 @@ public class MatrixTiles extends Tiles implements Cloneable
         else
         {
             MatrixTiles n = (MatrixTiles) other;
-            for (int i = 0; i < SIZE; i++)
-                for (int j = 0; j < SIZE; j++)
+            if (getRows() != n.getRows() || getColumns() != n.getColumns() || getZobristHash() != n.getZobristHash())
+                return false;
+            for (int i = 0; i < getRows(); i++)
+                for (int j = 0; j < getColumns(); j++)
                     if (tiles[i][j] != n.tiles[i][j])
                         return false;
 
@@ -0,0 +1,229 @@
+package am.aua.npuzzle.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** The {@code MoveJournal} class records the moves played on a board, 2 bits per move,
+ * for undo and redo. Undoing applies the inverse move in place and redoing applies the move again,
+ * both in O(1) and without copying the board. Recording a move after undoing drops the moves that were undone.
+ * <p>
+ * Optionally a copy of the board is kept every {@code checkpointInterval} moves,
+ * so {@link #seek(Tiles, int)} reaches any point of a long history without replaying all of it.
+ */
+public class MoveJournal
+{
+    /** Moves per {@code long}. */
+    private static final int PER_WORD = 32;
+    /** Directions by ordinal. */
+    private static final Tiles.Direction[] DIRECTIONS = Tiles.Direction.values();
+
+    /** The moves, the {@code i}-th one in bits {@code 2 * (i % 32)} of word {@code i / 32}. */
+    private long[] words;
+    /** Number of moves recorded, including the ones undone. */
+    private int size;
+    /** Number of moves currently applied to the board. */
+    private int position;
+    /** Moves between checkpoints, 0 for none. */
+    private final int checkpointInterval;
+    /** The board after {@code k * checkpointInterval} moves, for every {@code k} reached so far. */
+    private final ArrayList<Tiles> checkpoints;
+
+    /** Creates an empty journal without checkpoints.
+     */
+    public MoveJournal()
+    {
+        this(null, 0);
+    }
+
+    /** Creates an empty journal keeping a copy of the board every {@code checkpointInterval} moves.
+     *
+     * @param start              the board before the first move, copied
+     * @param checkpointInterval moves between checkpoints, 0 for none
+     */
+    public MoveJournal(Tiles start, int checkpointInterval)
+    {
+        if (checkpointInterval < 0 || (checkpointInterval > 0 && start == null))
+            throw new IllegalArgumentException("Invalid checkpoint interval " + checkpointInterval);
+        this.words = new long[4];
+        this.checkpointInterval = checkpointInterval;
+        this.checkpoints = new ArrayList<>();
+        if (checkpointInterval > 0)
+            checkpoints.add((Tiles) start.clone());
+    }
+
+    /** Records a move just played on the board, dropping the moves undone before it.
+     *
+     * @param direction the direction of the move
+     * @param tiles     the board after the move, copied if a checkpoint is due
+     */
+    public void record(Tiles.Direction direction, Tiles tiles)
+    {
+        size = position;
+        if (checkpointInterval > 0)
+            while (checkpoints.size() > 1 + size / checkpointInterval)
+                checkpoints.remove(checkpoints.size() - 1);
+        int word = size / PER_WORD;
+        if (word == words.length)
+            words = Arrays.copyOf(words, 2 * words.length);
+        int shift = (size % PER_WORD) << 1;
+        words[word] = (words[word] & ~(3L << shift)) | ((long) direction.ordinal() << shift);
+        position = ++size;
+        if (checkpointInterval > 0 && size % checkpointInterval == 0)
+            checkpoints.add((Tiles) tiles.clone());
+    }
+
+    /** Getter for a recorded move.
+     *
+     * @param index the number of the move, from 0
+     * @return the direction of the move
+     * @throws IndexOutOfBoundsException if there is no such move
+     */
+    public Tiles.Direction get(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Move " + index + " out of " + size);
+        return DIRECTIONS[(int) (words[index / PER_WORD] >>> ((index % PER_WORD) << 1)) & 3];
+    }
+
+    /** Getter for the number of moves recorded, including the ones undone.
+     *
+     * @return the size
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /** Getter for the number of moves currently applied.
+     *
+     * @return the position
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+    /** Checks if there is a move to undo.
+     *
+     * @return {@code true} if {@link #undo(Tiles)} can be called
+     */
+    public boolean canUndo()
+    {
+        return position > 0;
+    }
+
+    /** Checks if there is an undone move to play again.
+     *
+     * @return {@code true} if {@link #redo(Tiles)} can be called
+     */
+    public boolean canRedo()
+    {
+        return position < size;
+    }
+
+    /** Takes back the last move applied.
+     *
+     * @param tiles the board, modified in place
+     * @return the direction of the move taken back
+     * @throws IllegalStateException if there is nothing to undo
+     */
+    public Tiles.Direction undo(Tiles tiles)
+    {
+        if (!canUndo())
+            throw new IllegalStateException("Nothing to undo");
+        Tiles.Direction direction = get(--position);
+        tiles.undo(direction);
+        return direction;
+    }
+
+    /** Plays again the last move undone.
+     *
+     * @param tiles the board, modified in place
+     * @return the direction of the move played
+     * @throws IllegalStateException if there is nothing to redo
+     */
+    public Tiles.Direction redo(Tiles tiles)
+    {
+        if (!canRedo())
+            throw new IllegalStateException("Nothing to redo");
+        Tiles.Direction direction = get(position++);
+        tiles.move(direction);
+        return direction;
+    }
+
+    /** Brings the board to the state after a number of moves, undoing or redoing as needed.
+     * If a checkpoint is closer to the target than the current position, the board is a copy of that checkpoint instead.
+     *
+     * @param tiles  the board at the current position, modified in place unless a checkpoint is used
+     * @param target the number of moves to have applied, between 0 and {@link #size()}
+     * @return the board after {@code target} moves, either {@code tiles} or a new board
+     * @throws IndexOutOfBoundsException if the target is out of the journal
+     */
+    public Tiles seek(Tiles tiles, int target)
+    {
+        if (target < 0 || target > size)
+            throw new IndexOutOfBoundsException("Position " + target + " out of " + size);
+        if (checkpointInterval > 0)
+        {
+            int k = Math.min(Math.round((float) target / checkpointInterval), checkpoints.size() - 1);
+            if (Math.abs(target - k * checkpointInterval) < Math.abs(target - position))
+            {
+                tiles = (Tiles) checkpoints.get(k).clone();
+                position = k * checkpointInterval;
+            }
+        }
+        while (position < target)
+            redo(tiles);
+        while (position > target)
+            undo(tiles);
+        return tiles;
+    }
+
+    /**Checks for equality
+     * @param other the class to check for equality
+     * @return true if both recorded the same moves and are at the same position, otherwise false
+     * */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other == null)
+            return false;
+        else if (getClass() != other.getClass())
+            return false;
+        else
+        {
+            MoveJournal j = (MoveJournal) other;
+            if (size != j.size || position != j.position)
+                return false;
+            for (int i = 0; i < size; i += PER_WORD)
+            {
+                int bits = Math.min(PER_WORD, size - i) << 1;
+                long mask = bits == 64 ? -1L : (1L << bits) - 1;
+                if (((words[i / PER_WORD] ^ j.words[i / PER_WORD]) & mask) != 0)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the hash code of the moves and position
+     * */
+    @Override
+    public int hashCode()
+    {
+        int hash = 31 * size + position;
+        for (int i = 0; i < size; i++)
+            hash = 31 * hash + get(i).ordinal();
+        return hash;
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Move journal at " + position + " of " + size + " moves";
+    }
+}
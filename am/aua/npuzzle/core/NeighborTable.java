@@ -0,0 +1,135 @@
+package am.aua.npuzzle.core;
+
+/**
+ * The {@code NeighborTable} class tells, for every cell of a board of given dimensions, which tile moves into it
+ * in each direction, so generating moves is a table lookup instead of edge checks.
+ * Moves that would leave the board, including across the end of a row, have no neighbor.
+ * It also holds the Manhattan distance of every tile from every cell to its goal cell,
+ * so the change of the distance after a move is two lookups.
+ * Tables are immutable and shared by all the boards of the same dimensions.
+ */
+public final class NeighborTable
+{
+    /** Largest number of cells, hence of rows or columns. */
+    private static final int MAX = ConfigurationParser.MAX_CELLS;
+    /** The table of dimensions {@code rows x cols} at {@code rows * (MAX + 1) + cols}, created on first use. */
+    private static final NeighborTable[] TABLES = new NeighborTable[(MAX + 1) * (MAX + 1)];
+
+    /** The cell of the tile moving into cell {@code c} in direction {@code d} at {@code 4 * c + d}, or -1. */
+    private final int[] neighbors;
+    /** The legal directions from every cell, bit {@code d} for the direction of ordinal {@code d}. */
+    private final byte[] legal;
+    /** Number of cells. */
+    private final int cells;
+    /** The Manhattan distance of tile {@code t} in cell {@code c} at {@code t * cells + c}, 0 for the empty tile. */
+    private final byte[] distances;
+
+    /**
+     * Builds the table of a board.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     */
+    private NeighborTable(int rows, int cols)
+    {
+        cells = rows * cols;
+        neighbors = new int[4 * cells];
+        legal = new byte[cells];
+        distances = new byte[cells * cells];
+        for (int c = 0; c < cells; c++)
+        {
+            int row = c / cols, col = c % cols;
+            set(c, Tiles.Direction.UP, row + 1 < rows ? c + cols : -1);      //the tile below the empty one
+            set(c, Tiles.Direction.DOWN, row > 0 ? c - cols : -1);           //the tile above
+            set(c, Tiles.Direction.LEFT, col + 1 < cols ? c + 1 : -1);       //the tile on the right
+            set(c, Tiles.Direction.RIGHT, col > 0 ? c - 1 : -1);             //the tile on the left
+            for (int t = 1; t < cells; t++)
+                distances[t * cells + c] = (byte) (Math.abs(row - (t - 1) / cols) + Math.abs(col - (t - 1) % cols));
+        }
+    }
+
+    private void set(int cell, Tiles.Direction direction, int neighbor)
+    {
+        neighbors[4 * cell + direction.ordinal()] = neighbor;
+        if (neighbor >= 0)
+            legal[cell] |= 1 << direction.ordinal();
+    }
+
+    /**
+     * Getter for the table of boards of the given dimensions.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return the shared table
+     * @throws IllegalArgumentException if there are more cells than a board can have
+     */
+    public static NeighborTable of(int rows, int cols)
+    {
+        if (rows < 1 || cols < 1 || rows * cols > MAX)
+            throw new IllegalArgumentException("Invalid board dimensions " + rows + "x" + cols);
+        int key = rows * (MAX + 1) + cols;
+        NeighborTable table = TABLES[key];
+        if (table == null)
+            TABLES[key] = table = new NeighborTable(rows, cols);       //a race only builds the same table twice
+        return table;
+    }
+
+    /**
+     * Finds the tile that would move into an empty cell in the given direction.
+     *
+     * @param cell      the empty cell
+     * @param direction ordinal of a {@code Tiles.Direction}
+     * @return the cell of that tile, or -1 if the move leaves the board
+     */
+    public int neighbor(int cell, int direction)
+    {
+        return neighbors[(cell << 2) | direction];
+    }
+
+    /**
+     * Getter for the legal moves when the empty tile is in a cell.
+     *
+     * @param cell the empty cell
+     * @return bit {@code d} set if the direction of ordinal {@code d} is legal
+     */
+    public int legalMoves(int cell)
+    {
+        return legal[cell];
+    }
+
+    /**
+     * Getter for the Manhattan distance of a tile from a cell to its goal cell.
+     *
+     * @param tile the tile
+     * @param cell the cell
+     * @return the number of rows plus the number of columns between them, 0 for the empty tile
+     */
+    public int distance(int tile, int cell)
+    {
+        return distances[tile * cells + cell];
+    }
+
+    /**
+     * One step of patience sorting on a bit set, for the linear conflict of a line:
+     * the smallest tail above {@code v} is replaced by {@code v}.
+     * After the whole line the number of set bits is the length of the longest increasing subsequence.
+     *
+     * @param tails the current tails, one bit per goal coordinate
+     * @param v     the next goal coordinate (below 64)
+     * @return the new tails
+     */
+    public static long extend(long tails, int v)
+    {
+        long above = v == 63 ? 0 : tails & (-1L << (v + 1));
+        return (tails & ~Long.lowestOneBit(above)) | (1L << v);
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Neighbor table of " + legal.length + " cells";
+    }
+}
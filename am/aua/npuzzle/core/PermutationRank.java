@@ -0,0 +1,251 @@
+package am.aua.npuzzle.core;
+
+/**
+ * The {@code PermutationRank} class maps boards and partial boards to dense integer indices and back,
+ * so tables indexed by board need no hashing and no unused entries.
+ * <p>
+ * A sequence of {@code k} distinct values below {@code n} is ranked with its Lehmer code: every value is replaced
+ * by the number of smaller values not used before it, which is one bit count on the set of values already used,
+ * and the digits are read in the mixed radix {@code n, n - 1, ..., n - k + 1}. The ranks of all sequences are exactly
+ * {@code 0} to {@code n! / (n - k)! - 1}. A whole board is the sequence of its tiles, cell by cell;
+ * a pattern is the sequence of the cells of some tiles, optionally followed by the cell of the empty tile.
+ * Ranking takes linear time; at most 64 values are supported, and whole boards of at most 20 cells,
+ * since {@code 21!} does not fit in a {@code long}.
+ */
+public final class PermutationRank
+{
+    /** Largest number of values, the size of the bit set of used values. */
+    public static final int MAX_VALUES = 64;
+    /** Largest number of cells of a board ranked as a whole. */
+    public static final int MAX_BOARD_CELLS = 20;
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private PermutationRank()
+    {
+    }
+
+    /**
+     * Number of sequences of {@code k} distinct values below {@code n}.
+     *
+     * @param n number of values
+     * @param k length of the sequences
+     * @return {@code n! / (n - k)!}
+     * @throws ArithmeticException if the count does not fit in a {@code long}
+     */
+    public static long count(int n, int k)
+    {
+        if (k < 0 || k > n)
+            throw new IllegalArgumentException("Cannot draw " + k + " of " + n + " values");
+        long count = 1;
+        for (int i = 0; i < k; i++)
+            count = Math.multiplyExact(count, n - i);
+        return count;
+    }
+
+    /**
+     * Ranks a sequence of distinct values.
+     *
+     * @param values the sequence, its first {@code k} elements used
+     * @param k      length of the sequence
+     * @param n      number of possible values, at most {@link #MAX_VALUES}
+     * @return the rank, between 0 and {@code count(n, k) - 1}
+     */
+    public static long rank(int[] values, int k, int n)
+    {
+        long rank = 0, used = 0;
+        for (int i = 0; i < k; i++)
+        {
+            int v = values[i];
+            rank = rank * (n - i) + v - Long.bitCount(used & ((1L << v) - 1));
+            used |= 1L << v;
+        }
+        return rank;
+    }
+
+    /**
+     * Finds the sequence of a rank.
+     *
+     * @param rank a rank returned by {@link #rank(int[], int, int)}
+     * @param k    length of the sequence
+     * @param n    number of possible values, at most {@link #MAX_VALUES}
+     * @param out  where to write the sequence, at least {@code k} long
+     */
+    public static void unrank(long rank, int k, int n, int[] out)
+    {
+        for (int i = k - 1; i >= 0; i--)                     //digits, least significant last
+        {
+            out[i] = (int) (rank % (n - i));
+            rank /= n - i;
+        }
+        long free = n == 64 ? -1L : (1L << n) - 1;
+        for (int i = 0; i < k; i++)
+        {
+            int v = select(free, out[i]);
+            out[i] = v;
+            free &= ~(1L << v);
+        }
+    }
+
+    /**
+     * Ranks a sequence of at most 8 distinct values packed in a {@code long}, without touching memory.
+     *
+     * @param values the sequence, element {@code i} in bits {@code 8 * i} to {@code 8 * i + 7}
+     * @param k      length of the sequence, at most 8
+     * @param n      number of possible values, at most {@link #MAX_VALUES}
+     * @return the rank, the same as {@link #rank(int[], int, int)} of the unpacked sequence
+     */
+    public static long rankPacked(long values, int k, int n)
+    {
+        long rank = 0, used = 0;
+        for (int i = 0; i < k; i++)
+        {
+            int v = (int) (values >>> (i << 3)) & 0xFF;
+            rank = rank * (n - i) + v - Long.bitCount(used & ((1L << v) - 1));
+            used |= 1L << v;
+        }
+        return rank;
+    }
+
+    /**
+     * Finds the packed sequence of a rank.
+     *
+     * @param rank a rank returned by {@link #rankPacked(long, int, int)}
+     * @param k    length of the sequence, at most 8
+     * @param n    number of possible values, at most {@link #MAX_VALUES}
+     * @return the sequence, element {@code i} in bits {@code 8 * i} to {@code 8 * i + 7}
+     */
+    public static long unrankPacked(long rank, int k, int n)
+    {
+        long digits = 0;
+        for (int i = k - 1; i >= 0; i--)
+        {
+            digits |= (rank % (n - i)) << (i << 3);
+            rank /= n - i;
+        }
+        long free = n == 64 ? -1L : (1L << n) - 1;
+        long values = 0;
+        for (int i = 0; i < k; i++)
+        {
+            int v = select(free, (int) (digits >>> (i << 3)) & 0xFF);
+            values |= (long) v << (i << 3);
+            free &= ~(1L << v);
+        }
+        return values;
+    }
+
+    /**
+     * Ranks a whole board: the sequence of its tiles in row-major order.
+     *
+     * @param tiles the board, of at most {@link #MAX_BOARD_CELLS} cells
+     * @return the rank, between 0 and {@code cells! - 1}
+     */
+    public static long rank(Tiles tiles)
+    {
+        int rows = tiles.getRows(), cols = tiles.getColumns();
+        int n = rows * cols;
+        checkBoard(n);
+        long rank = 0, used = 0;
+        for (int i = 0; i < n; i++)
+        {
+            int v = tiles.getTile(i / cols, i % cols);
+            rank = rank * (n - i) + v - Long.bitCount(used & ((1L << v) - 1));
+            used |= 1L << v;
+        }
+        return rank;
+    }
+
+    /**
+     * Finds the board of a rank.
+     *
+     * @param rank a rank returned by {@link #rank(Tiles)}
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return the tiles in row-major order
+     */
+    public static byte[] unrank(long rank, int rows, int cols)
+    {
+        int n = rows * cols;
+        checkBoard(n);
+        int[] values = new int[n];
+        unrank(rank, n, n, values);
+        byte[] cells = new byte[n];
+        for (int i = 0; i < n; i++)
+            cells[i] = (byte) values[i];
+        return cells;
+    }
+
+    /**
+     * Ranks the placement of some tiles and of the empty tile: the sequence of their cells,
+     * in the order of {@code pattern}, then the cell of the empty tile.
+     *
+     * @param tiles   the board, of at most {@link #MAX_VALUES} cells
+     * @param pattern the tiles, not including the empty one
+     * @return the rank, between 0 and {@code count(cells, pattern.length + 1) - 1}
+     */
+    public static long rankPattern(Tiles tiles, int[] pattern)
+    {
+        int rows = tiles.getRows(), cols = tiles.getColumns();
+        int n = rows * cols;
+        if (n > MAX_VALUES)
+            throw new IllegalArgumentException("Boards of more than " + MAX_VALUES + " cells cannot be ranked");
+        int[] slotOf = new int[n];
+        for (int s = 0; s < pattern.length; s++)
+            slotOf[pattern[s]] = s + 1;
+        int[] cells = new int[pattern.length + 1];
+        for (int i = 0; i < n; i++)
+        {
+            int tile = tiles.getTile(i / cols, i % cols);
+            if (tile == Tiles.EMPTY)
+                cells[pattern.length] = i;
+            else if (slotOf[tile] > 0)
+                cells[slotOf[tile] - 1] = i;
+        }
+        return rank(cells, cells.length, n);
+    }
+
+    /**
+     * Finds the cells of the tiles and of the empty tile from the rank of a pattern.
+     *
+     * @param rank    a rank returned by {@link #rankPattern(Tiles, int[])}
+     * @param pattern the tiles, not including the empty one
+     * @param cells   number of cells of the board
+     * @return the cell of every tile of the pattern, in its order, then the cell of the empty tile
+     */
+    public static int[] unrankPattern(long rank, int[] pattern, int cells)
+    {
+        int[] out = new int[pattern.length + 1];
+        unrank(rank, out.length, cells, out);
+        return out;
+    }
+
+    /**
+     * Finds the {@code k}-th set bit of a bit set, counting from 0.
+     * Halves of the remaining bits are skipped with bit counts, so it takes 6 steps.
+     */
+    private static int select(long bits, int k)
+    {
+        int pos = 0;
+        for (int width = 32; width > 0; width >>>= 1)
+        {
+            long low = bits & ((1L << width) - 1);
+            int c = Long.bitCount(low);
+            if (k >= c)
+            {
+                k -= c;
+                bits >>>= width;
+                pos += width;
+            }
+            else
+                bits = low;
+        }
+        return pos;
+    }
+
+    private static void checkBoard(int cells)
+    {
+        if (cells > MAX_BOARD_CELLS)
+            throw new IllegalArgumentException("Boards of more than " + MAX_BOARD_CELLS + " cells cannot be ranked as a whole");
+    }
+}
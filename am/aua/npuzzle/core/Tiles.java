@@ -1,8 +1,11 @@
 package am.aua.npuzzle.core;
 
+import am.aua.npuzzle.metrics.Metrics;
+
 /**
- * The {@code Tiles} class represents the 15-puzzle game board.
+ * The {@code Tiles} class represents the N-puzzle game board.
  * It provides methods to initialize the game state.
+ * The dimensions of a board are those of its configuration, so 3x3, 4x4, 5x5 or rectangular boards all work.
  */
 public abstract class Tiles implements Cloneable
 {
@@ -12,10 +15,30 @@ public abstract class Tiles implements Cloneable
     public enum Direction
     {
         UP, DOWN, LEFT, RIGHT;
+
+        /**
+         * Getter for the direction that undoes this one.
+         *
+         * @return the opposite direction
+         */
+        public Direction opposite()
+        {
+            switch (this)
+            {
+                case UP:
+                    return DOWN;
+                case DOWN:
+                    return UP;
+                case LEFT:
+                    return RIGHT;
+                default:
+                    return LEFT;
+            }
+        }
     }
 
     /**
-     * The size of the puzzle is 4x4.
+     * The default size of the puzzle is 4x4.
      */
     public static final int SIZE = 4;
     /**
@@ -30,6 +53,52 @@ public abstract class Tiles implements Cloneable
      * The configuration of the game.
      */
     private Configuration configuration;
+    /**
+     * Number of rows of the board.
+     */
+    private int rows;
+    /**
+     * Number of columns of the board.
+     */
+    private int cols;
+    /**
+     * The moves possible from every cell of a board of these dimensions.
+     */
+    private NeighborTable neighbors;
+    /**
+     * Whether the statistics below match the board. Cleared by {@link #tilesChanged()}
+     * and recomputed from scratch the next time they are needed.
+     */
+    private boolean tracked;
+    /**
+     * Position of the empty tile, in row-major order.
+     */
+    private int emptyCell;
+    /**
+     * Number of tiles that are not in their goal cell, the empty tile not counted.
+     */
+    private int misplaced;
+    /**
+     * Parity of the number of inversions.
+     */
+    private boolean oddInversions;
+    /**
+     * Zobrist hash of the board.
+     */
+    private long hash;
+    /**
+     * Sum of the Manhattan distances of the tiles from their goal cells.
+     */
+    private int manhattan;
+    /**
+     * Linear conflict of every row, then of every column, or {@code null} until it is first asked for.
+     * It is only valid while {@code tracked} is set.
+     */
+    private int[] lineConflicts;
+    /**
+     * Sum of {@code lineConflicts}.
+     */
+    private int conflicts;
 
 
 
@@ -44,7 +113,10 @@ public abstract class Tiles implements Cloneable
         try
         {
             this.configuration = new Configuration(format);
-        } catch (ConfigurationFormatException e)
+            this.rows = configuration.getRows();
+            this.cols = configuration.getColumns();
+            this.neighbors = NeighborTable.of(rows, cols);
+        } catch (ConfigurationFormatException | InvalidConfigurationException e)
         {
             System.out.println(e.getMessage());
             System.exit(1);
@@ -57,7 +129,17 @@ public abstract class Tiles implements Cloneable
      */
     public Tiles(Configuration config)
     {
-        this.configuration = config;
+        try
+        {
+            this.configuration = config;
+            this.rows = configuration.getRows();
+            this.cols = configuration.getColumns();
+            this.neighbors = NeighborTable.of(rows, cols);
+        } catch (ConfigurationFormatException | InvalidConfigurationException e)
+        {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
     }
 
     /**
@@ -69,6 +151,17 @@ public abstract class Tiles implements Cloneable
     {
         this.configuration = new Configuration(that.configuration);
         this.moves = that.moves;
+        this.rows = that.rows;
+        this.cols = that.cols;
+        this.neighbors = that.neighbors;
+        this.tracked = that.tracked;
+        this.emptyCell = that.emptyCell;
+        this.misplaced = that.misplaced;
+        this.oddInversions = that.oddInversions;
+        this.hash = that.hash;
+        this.manhattan = that.manhattan;
+        this.lineConflicts = that.lineConflicts == null ? null : that.lineConflicts.clone();
+        this.conflicts = that.conflicts;
     }
 
     /* I don't need this part,but i keep it
@@ -90,6 +183,55 @@ public abstract class Tiles implements Cloneable
     {
         moveImpl(direction);
         moves++;
+        Metrics.move();
+    }
+
+    /**
+     * Moves corresponding tile in the specified direction if there is one, without throwing.
+     *
+     * @param direction The direction to move the empty tile.
+     * @return {@code true} if the tile moved, {@code false} if the move would leave the board
+     */
+    public boolean tryMove(Direction direction)
+    {
+        if ((neighbors.legalMoves(getEmptyPosition()) & (1 << direction.ordinal())) == 0)
+            return false;
+        moveImpl(direction);
+        moves++;
+        Metrics.move();
+        return true;
+    }
+
+    /**
+     * Getter for the moves that are possible on the current board.
+     *
+     * @return bit {@code d} set if the direction of ordinal {@code d} is legal
+     */
+    public int legalMoves()
+    {
+        return neighbors.legalMoves(getEmptyPosition());
+    }
+
+    /**
+     * Finds the tile that moves in the given direction, for {@code moveImpl}.
+     *
+     * @param direction The direction of the move.
+     * @return the position of the tile in row-major order, or -1 if the move would leave the board
+     */
+    protected final int neighbor(Direction direction)
+    {
+        return neighbors.neighbor(getEmptyPosition(), direction.ordinal());
+    }
+
+    /**
+     * Takes back a move in the specified direction, moving the same tile back and decrementing the number of moves.
+     *
+     * @param direction The direction of the move to take back.
+     */
+    public void undo(Direction direction)
+    {
+        moveImpl(direction.opposite());
+        moves--;
     }
 
     /**
@@ -98,12 +240,13 @@ public abstract class Tiles implements Cloneable
      * @throws InvalidConfigurationException if the config is not valid
      */
     public void ensureValidity() throws InvalidConfigurationException {
-        boolean[] found = new boolean[SIZE * SIZE];
-        for (int i = 0; i < SIZE; i++)
-            for (int j = 0; j < SIZE; j++) {
-                byte value = getTile(j, i);
+        Metrics.validityCheck();
+        boolean[] found = new boolean[rows * cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++) {
+                byte value = getTile(i, j);
                 if (value != EMPTY) {
-                    if (value < 1 || value >= SIZE * SIZE)
+                    if (value < 1 || value >= rows * cols)
                         throw new InvalidConfigurationException("Invalid configuration: incorrect tile value " + value + ".");
                     else if (found[value])
                         throw new InvalidConfigurationException("Invalid configuration: multiple tiles with the value" + value + ".");
@@ -117,31 +260,187 @@ public abstract class Tiles implements Cloneable
     }
 
     /**
-     * Checks if the configuration is solvable or no
+     * Checks if the configuration is solvable or no.
+     * With an odd number of columns the number of inversions must be even; with an even number
+     * it must have the other parity than the row of the empty tile counted from the bottom.
+     * The parity is kept up to date by every move, so this is O(1) except for the first call.
      *
      * @return true if the config is solvable ,false otherwise
      */
     public boolean isSolvable() {
-        int inversions = 0;
-        int row = 0;
-        for (int i = 0; i < SIZE; i++)
-            for (int j = 0; j < SIZE; j++) {
-                if (getTile(j, i) == EMPTY) {
-                    row = SIZE - i;
-                    continue;
-                }
-                for (int l = j + 1; l < SIZE; l++)
-                    if (getTile(j, i) > getTile(l, i) && getTile(l, i) != EMPTY)
-                        inversions++;
-                for (int k = i + 1; k < SIZE; k++)
-                    for (int l = 0; l < SIZE; l++)
-                        if (getTile(j, i) > getTile(l, k) && getTile(l, k) != EMPTY)
-                            inversions++;
-            }
-        int check = inversions + (((SIZE & 1) == 0) ? row : 1);
+        Metrics.solvabilityCheck();
+        track();
+        int row = rows - emptyCell / cols;
+        int check = (oddInversions ? 1 : 0) + (((cols & 1) == 0) ? row : 1);
         return (check & 1) == 1;
     }
 
+    /**
+     * Getter for the number of tiles out of place, kept up to date by every move.
+     *
+     * @return the number of tiles not in their goal cell, 0 if and only if the puzzle is solved
+     */
+    public int getMisplacedCount()
+    {
+        track();
+        return misplaced;
+    }
+
+    /**
+     * Getter for the 64-bit Zobrist hash of the board, kept up to date by every move.
+     * Boards with the same tiles in the same cells have the same hash.
+     *
+     * @return the hash
+     * @see Zobrist
+     */
+    public long getZobristHash()
+    {
+        track();
+        return hash;
+    }
+
+    /**
+     * Getter for the sum of the Manhattan distances of the tiles from their goal cells, kept up to date by every move.
+     *
+     * @return the Manhattan distance of the board
+     */
+    public int getManhattanDistance()
+    {
+        track();
+        return manhattan;
+    }
+
+    /**
+     * Getter for the linear conflict of the board: two moves for every tile that has to leave its goal row
+     * or column to let another tile of that line pass. It is computed the first time it is asked for.
+     * After that a move changes at most one line: of the two lines the tile left and entered across the move,
+     * only its goal line, if it is one of them, gains or loses a tile that counts. That line alone is scanned again;
+     * every other move keeps the conflicts as they are.
+     *
+     * @return the linear conflict, to add to the Manhattan distance
+     */
+    public int getLinearConflict()
+    {
+        track();
+        if (lineConflicts == null)
+        {
+            lineConflicts = new int[rows + cols];
+            conflicts = 0;
+            for (int line = 0; line < rows + cols; line++)
+                conflicts += lineConflicts[line] = lineConflict(line);
+        }
+        return conflicts;
+    }
+
+    /**
+     * Must be called by {@code moveImpl} after a tile slid into the empty cell,
+     * so the statistics of the board stay correct without scanning it again.
+     *
+     * @param tile The tile that moved.
+     * @param from The position the tile left, now empty, in row-major order.
+     * @param to   The position the tile entered, in row-major order.
+     */
+    protected final void tileMoved(byte tile, int from, int to)
+    {
+        if (!tracked)
+            return;
+        int goal = tile - 1;
+        misplaced += (to != goal ? 1 : 0) - (from != goal ? 1 : 0);
+        if ((cols & 1) == 0 && from - to != 1 && to - from != 1)
+            oddInversions = !oddInversions;      //a vertical move jumps over cols - 1 tiles
+        hash ^= Zobrist.move(tile, from, to);
+        manhattan += neighbors.distance(tile, to) - neighbors.distance(tile, from);
+        emptyCell = from;
+        if (lineConflicts != null)
+        {
+            int line;                           //a horizontal move keeps the order of its row, and the other way round
+            if (from / cols == to / cols)
+                line = rows + goal % cols;
+            else
+                line = goal / cols;
+            if (line == lineOf(from, line < rows) || line == lineOf(to, line < rows))
+            {
+                conflicts -= lineConflicts[line];
+                conflicts += lineConflicts[line] = lineConflict(line);
+            }
+        }
+    }
+
+    /**
+     * Must be called by {@code setTile}, since any tile may have changed.
+     */
+    protected final void tilesChanged()
+    {
+        tracked = false;
+        lineConflicts = null;
+    }
+
+    /**
+     * Computes the statistics of the board from scratch unless they are up to date.
+     */
+    private void track()
+    {
+        if (tracked)
+            return;
+        misplaced = 0;
+        hash = 0;
+        manhattan = 0;
+        lineConflicts = null;
+        for (int i = 0; i < rows * cols; i++)
+        {
+            byte tile = getTile(i);
+            hash ^= Zobrist.key(i, tile);
+            manhattan += neighbors.distance(tile, i);
+            if (tile == EMPTY)
+                emptyCell = i;
+            else if (tile != i + 1)
+                misplaced++;
+        }
+        oddInversions = (numberOfInv() & 1) == 1;
+        tracked = true;
+    }
+
+    /**
+     * Finds the line of a cell.
+     *
+     * @param cell a position in row-major order
+     * @param row  {@code true} for its row, {@code false} for its column
+     * @return the row, or {@code rows} plus the column
+     */
+    private int lineOf(int cell, boolean row)
+    {
+        return row ? cell / cols : rows + cell % cols;
+    }
+
+    /**
+     * Computes the linear conflict of a line: twice the number of its tiles, among those whose goal is in the line,
+     * that are not in the longest run already in goal order, found with {@link NeighborTable#extend(long, int)}.
+     *
+     * @param line a row, or {@code rows} plus a column
+     * @return the linear conflict of the line
+     */
+    private int lineConflict(int line)
+    {
+        boolean row = line < rows;
+        int index = row ? line : line - rows;
+        int length = row ? cols : rows;
+        int count = 0;
+        long tails = 0;
+        for (int k = 0; k < length; k++)
+        {
+            byte tile = row ? getTile(index, k) : getTile(k, index);
+            if (tile == EMPTY)
+                continue;
+            int goalRow = (tile - 1) / cols, goalCol = (tile - 1) % cols;
+            if ((row ? goalRow : goalCol) == index)
+            {
+                tails = NeighborTable.extend(tails, row ? goalCol : goalRow);
+                count++;
+            }
+        }
+        return 2 * (count - Long.bitCount(tails));
+    }
+
     /**
      * Getter fot moves count.
      *
@@ -162,6 +461,26 @@ public abstract class Tiles implements Cloneable
         return this.configuration;
     }
 
+    /**
+     * Getter for the number of rows.
+     *
+     * @return rows
+     */
+    public final int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Getter for the number of columns.
+     *
+     * @return columns
+     */
+    public final int getColumns()
+    {
+        return cols;
+    }
+
     /**
      * Getter for the tile value at the specified position.
      *
@@ -170,8 +489,8 @@ public abstract class Tiles implements Cloneable
      */
     private byte getTile(int pos)
     {
-        int row = pos / SIZE;
-        int col = pos % SIZE;
+        int row = pos / cols;
+        int col = pos % cols;
         byte value = -1;
         try
         {
@@ -185,21 +504,25 @@ public abstract class Tiles implements Cloneable
     }
 
     /**
-     * Calculates the number of inversions in tiles.
+     * Calculates the number of inversions in tiles, reading the board row by row and skipping the empty tile.
+     * Tiles are read backwards while a Fenwick tree counts the smaller tiles already seen, in O(n log n).
      *
      * @return the number of inversions
      */
     private int numberOfInv()
     {
+        int n = rows * cols;
+        int[] tree = new int[n];
         int inv = 0;
-        int pos = 1;
-        for (int i = 0; i < SIZE; i++)
+        for (int i = n - 1; i >= 0; i--)
         {
-            for (int j = i + 1; j < SIZE; j++)
-            {
-                if (getTile(i, j) != EMPTY && getTile(i, j) > getTile(pos++)) //here there is no need to check for exception because i and j are from[0;SIZE)
-                    inv++;
-            }
+            byte tile = getTile(i);
+            if (tile == EMPTY)
+                continue;
+            for (int k = tile - 1; k > 0; k -= k & -k)
+                inv += tree[k];
+            for (int k = tile; k < n; k += k & -k)
+                tree[k]++;
         }
         return inv;
     }
@@ -212,6 +535,13 @@ public abstract class Tiles implements Cloneable
      */
     public abstract boolean isSolved();
 
+    /**
+     * Getter for the position of the empty tile.
+     *
+     * @return the position in row-major order
+     */
+    protected abstract int getEmptyPosition();
+
     /**
      * Getter for the tile value at the specified position.
      *
@@ -226,7 +556,7 @@ public abstract class Tiles implements Cloneable
      *
      * @param row   The row index.
      * @param col   The column index.
-     * @param value The tile value (must be between 0 and 15).
+     * @param value The tile value (must be between 0 and rows * columns - 1).
      */
     public abstract void setTile(int row, int col, byte value) throws PositionOutOfBoardException;
 
@@ -235,7 +565,10 @@ public abstract class Tiles implements Cloneable
     {
         try
         {
-            return super.clone();           //configuration is immutable
+            Tiles t = (Tiles) super.clone();           //configuration is immutable
+            if (lineConflicts != null)
+                t.lineConflicts = lineConflicts.clone();
+            return t;
         } catch (CloneNotSupportedException e)
         {
             System.out.println(e.getMessage());
@@ -250,7 +583,8 @@ public abstract class Tiles implements Cloneable
      */
     protected abstract void moveImpl(Direction direction);
 
-    /**Checks for equality
+    /**Checks for equality: two boards are equal if they have the same tiles in the same cells.
+     * The hashes are compared first, so different boards are almost always told apart in O(1).
      * @param other the class to check for equality
      * @return true if both are equal, otherwise false
      * */
@@ -264,10 +598,24 @@ public abstract class Tiles implements Cloneable
         else
         {
             Tiles t = (Tiles) other;
-            return moves == t.moves && configuration.equals(t.configuration);
+            if (rows != t.rows || cols != t.cols || getZobristHash() != t.getZobristHash())
+                return false;
+            for (int i = 0; i < rows * cols; i++)
+                if (getTile(i) != t.getTile(i))
+                    return false;
+            return true;
         }
     }
 
+    /**
+     * @return the hash code of the board, derived from its Zobrist hash
+     * */
+    @Override
+    public int hashCode()
+    {
+        return Zobrist.fold(getZobristHash());
+    }
+
     /**
      * @return the string representation of this class
      * */
@@ -0,0 +1,479 @@
+package am.aua.npuzzle.core;
+
+import java.nio.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**The {@code TilesBatch} class holds many boards of the same dimensions off the heap, column by column,
+ * for analytics over whole stores where one {@code Tiles} object per board would cost far more than the board.
+ * <p>
+ * The boards have at most {@value LongTiles#MAX_CELLS} cells, so every tile fits in 4 bits like in a binary store.
+ * The boards are split in chunks of {@value #CHUNK} boards, each a direct buffer holding one column per pair
+ * of cells, cells {@code 2p} and {@code 2p + 1} of board {@code i} of the chunk in the low and high nibble
+ * of the byte at {@code p * CHUNK + i}, and a last column with the empty cell of every board.
+ * A batch of 100 million 4x4 boards takes 900 MB of direct memory, which must be allowed
+ * with {@code -XX:MaxDirectMemorySize} if it is more than the heap, and a few small objects on the heap.
+ * <p>
+ * The bulk operations go over the chunks in parallel. Validity, solvability and the heuristics unpack the columns
+ * of a chunk into reused arrays, one per cell, and work column by column, so the inner loops are plain loops over arrays
+ * with no branch, which the JIT compiler unrolls and vectorizes. Solvability counts the inversions pair of
+ * columns by pair of columns for the same reason. Moves touch one cell per board, chosen by its empty cell,
+ * so they work on the buffers directly.
+ */
+public class TilesBatch
+{
+    /** Log2 of the number of boards in one chunk. */
+    private static final int CHUNK_BITS = 16;
+    /** Number of boards in one chunk. */
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    /** The empty cell of a board without an empty tile. */
+    private static final byte NO_BLANK = -1;
+    /** Mask of a single nibble. */
+    private static final int NIBBLE = 0xF;
+
+    /** Number of rows of the boards. */
+    private final int rows;
+    /** Number of columns of the boards. */
+    private final int cols;
+    /** Number of cells of the boards. */
+    private final int cells;
+    /** Number of columns of a chunk holding tiles, two cells per column; the empty cells come after them. */
+    private final int pairs;
+    /** Largest number of boards. */
+    private final int capacity;
+    /** The chunks, allocated as boards are added. */
+    private final ByteBuffer[] chunks;
+    /** The moves possible from every cell. */
+    private final NeighborTable neighbors;
+    /** The columns of a chunk copied to the heap, one set per thread. */
+    private final ThreadLocal<byte[][]> columns;
+    /** Number of boards. */
+    private int size;
+
+    /**Creates an empty batch.
+     *
+     * @param rows     number of rows of the boards
+     * @param cols     number of columns of the boards
+     * @param capacity largest number of boards
+     * @throws IllegalArgumentException if the boards have more than {@value LongTiles#MAX_CELLS} cells
+     */
+    public TilesBatch(int rows, int cols, int capacity)
+    {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("Invalid board dimensions " + rows + "x" + cols);
+        if (rows * cols > LongTiles.MAX_CELLS)
+            throw new IllegalArgumentException("A board of " + rows + "x" + cols + " does not fit in 4 bits per cell");
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity " + capacity);
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        this.pairs = (cells + 1) >>> 1;
+        this.capacity = capacity;
+        this.chunks = new ByteBuffer[(int) (((long) capacity + CHUNK - 1) >>> CHUNK_BITS)];
+        this.neighbors = NeighborTable.of(rows, cols);
+        this.columns = ThreadLocal.withInitial(() -> new byte[cells + 1][CHUNK]);
+    }
+
+    /**Copies every board of a binary store into a new batch.
+     *
+     * @param reader the binary store
+     * @return the batch
+     * @throws IllegalArgumentException if the store has more boards than a batch can hold
+     */
+    public static TilesBatch of(BinaryConfigurationReader reader)
+    {
+        if (reader.size() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("A batch cannot hold " + reader.size() + " boards");
+        TilesBatch batch = new TilesBatch(reader.getRows(), reader.getColumns(), (int) reader.size());
+        byte[] tiles = new byte[batch.cells];
+        for (long i = 0; i < reader.size(); i++)
+        {
+            long board = reader.getPacked(i);
+            for (int c = 0; c < tiles.length; c++)
+                tiles[c] = (byte) (board >>> (c << 2) & 0xF);
+            batch.add(tiles);
+        }
+        return batch;
+    }
+
+    /**Appends a configuration.
+     *
+     * @param config the configuration
+     * @throws ConfigurationFormatException  if the data is malformed or the board has other dimensions
+     * @throws InvalidConfigurationException if the numbers are not a valid board
+     */
+    public void add(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        if (config.getRows() != rows || config.getColumns() != cols)
+            throw new ConfigurationFormatException("Invalid configuration format: " + config.getRows() + "x"
+                    + config.getColumns() + " configuration for a batch of " + rows + "x" + cols + " boards.");
+        add(config.cells());
+    }
+
+    /**Appends a board as it is; use {@link #validate()} to find the boards that are not valid.
+     *
+     * @param tiles the tiles in row-major order
+     * @throws IllegalStateException    if the batch is full
+     * @throws IllegalArgumentException if a number does not fit into a nibble
+     */
+    public void add(byte[] tiles)
+    {
+        if (size == capacity)
+            throw new IllegalStateException("The batch is full at " + capacity + " boards");
+        checkLength(tiles);
+        if ((size & (CHUNK - 1)) == 0)
+            chunks[size >>> CHUNK_BITS] = ByteBuffer.allocateDirect((pairs + 1) << CHUNK_BITS);
+        write(size++, tiles);
+    }
+
+    /**Replaces a board as it is.
+     *
+     * @param index the position of the board
+     * @param tiles the tiles in row-major order
+     * @throws IllegalArgumentException if a number does not fit into a nibble
+     */
+    public void set(int index, byte[] tiles)
+    {
+        check(index);
+        checkLength(tiles);
+        write(index, tiles);
+    }
+
+    private void write(int index, byte[] tiles)
+    {
+        ByteBuffer chunk = chunks[index >>> CHUNK_BITS];
+        int i = index & (CHUNK - 1);
+        byte blank = NO_BLANK;
+        for (int c = 0; c < cells; c++)
+        {
+            if (tiles[c] < 0 || tiles[c] > NIBBLE)
+                throw new IllegalArgumentException("Invalid configuration: incorrect tile value " + tiles[c] + ".");
+            if (tiles[c] == Tiles.EMPTY && blank == NO_BLANK)
+                blank = (byte) c;
+        }
+        for (int p = 0; p < pairs; p++)
+        {
+            int high = 2 * p + 1 < cells ? tiles[2 * p + 1] : 0;
+            chunk.put((p << CHUNK_BITS) | i, (byte) (tiles[2 * p] | high << 4));
+        }
+        chunk.put((pairs << CHUNK_BITS) | i, blank);
+    }
+
+    /**Getter for a tile.
+     *
+     * @param index the position of the board
+     * @param cell  the cell, {@code row * columns + col}
+     * @return the tile in that cell
+     */
+    public byte getTile(int index, int cell)
+    {
+        check(index);
+        if (cell < 0 || cell >= cells)
+            throw new PositionOutOfBoardException();
+        return (byte) nibble(chunks[index >>> CHUNK_BITS], cell, index & (CHUNK - 1));
+    }
+
+    /**Getter for a board.
+     *
+     * @param index the position of the board
+     * @return a copy of the tiles in row-major order
+     */
+    public byte[] getTiles(int index)
+    {
+        byte[] tiles = new byte[cells];
+        for (int c = 0; c < cells; c++)
+            tiles[c] = getTile(index, c);
+        return tiles;
+    }
+
+    /**Getter for a board as a configuration.
+     *
+     * @param index the position of the board
+     * @return the configuration in the text form
+     */
+    public Configuration getConfiguration(int index)
+    {
+        StringBuilder data = new StringBuilder(3 * cells);
+        for (int c = 0; c < cells; c++)
+        {
+            if (c > 0)
+                data.append(c % cols == 0 ? " : " : " ");
+            data.append(getTile(index, c));
+        }
+        try
+        {
+            return new Configuration(data.toString());
+        }
+        catch (ConfigurationFormatException e)
+        {
+            throw new IllegalStateException(e);        //the data is never empty
+        }
+    }
+
+    /**Getter for the number of rows of the boards.
+     *
+     * @return rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**Getter for the number of columns of the boards.
+     *
+     * @return columns
+     */
+    public int getColumns()
+    {
+        return cols;
+    }
+
+    /**Getter for the number of boards.
+     *
+     * @return the count
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**Checks every board: each number from 0 to the number of cells minus one must appear exactly once.
+     *
+     * @return bit {@code i} set if board {@code i} is valid
+     */
+    public BitSet validate()
+    {
+        long[] words = new long[(size + 63) >>> 6];
+        IntStream.range(0, chunkCount()).parallel().forEach(k ->
+        {
+            byte[][] columns = load(k);
+            long[] valid = valid(columns, count(k));
+            System.arraycopy(valid, 0, words, k << (CHUNK_BITS - 6), valid.length);
+        });
+        return BitSet.valueOf(words);
+    }
+
+    /**Checks every board for solvability, like {@link Tiles#isSolvable()}: the parity of the inversions,
+     * counting the empty tile as the largest, must be the parity of the distance of the empty tile from its goal cell.
+     *
+     * @return bit {@code i} set if board {@code i} is valid and solvable
+     */
+    public BitSet solvable()
+    {
+        long[] words = new long[(size + 63) >>> 6];
+        byte[] blankParity = new byte[cells];
+        for (int c = 0; c < cells; c++)
+            blankParity[c] = (byte) (((rows - 1 - c / cols) + (cols - 1 - c % cols)) & 1);
+        IntStream.range(0, chunkCount()).parallel().forEach(k ->
+        {
+            byte[][] columns = load(k);
+            int n = count(k);
+            long[] valid = valid(columns, n);
+            for (int c = 0; c < cells; c++)
+            {
+                byte[] column = columns[c];
+                for (int i = 0; i < n; i++)                 //the empty tile, 0, becomes the largest
+                    column[i] = (byte) ((column[i] - 1) & Byte.MAX_VALUE);
+            }
+            byte[] parity = new byte[n];
+            for (int a = 0; a < cells; a++)
+            {
+                byte[] first = columns[a];
+                for (int b = a + 1; b < cells; b++)
+                {
+                    byte[] second = columns[b];
+                    for (int i = 0; i < n; i++)             //all ones if the first is larger, from the sign of the difference
+                        parity[i] ^= (byte) ((second[i] - first[i]) >> 7);
+                }
+            }
+            byte[] blanks = columns[cells];
+            for (int i = 0; i < n; i++)
+                if ((valid[i >>> 6] & (1L << i)) != 0 && (parity[i] & 1) != blankParity[blanks[i]])
+                    valid[i >>> 6] &= ~(1L << i);
+            System.arraycopy(valid, 0, words, k << (CHUNK_BITS - 6), valid.length);
+        });
+        return BitSet.valueOf(words);
+    }
+
+    /**Computes the Manhattan distance of every board, like {@link Tiles#getManhattanDistance()}.
+     * Numbers that are not tiles of the board count for nothing.
+     *
+     * @return the distance of board {@code i} at {@code i}
+     */
+    public short[] manhattan()
+    {
+        int[][] distances = new int[cells][256];
+        for (int c = 0; c < cells; c++)
+            for (int t = 1; t < cells; t++)
+                distances[c][t] = neighbors.distance(t, c);
+        return sum(distances);
+    }
+
+    /**Counts the tiles out of their goal cell in every board, like {@link Tiles#getMisplacedCount()}.
+     *
+     * @return the count of board {@code i} at {@code i}
+     */
+    public short[] misplaced()
+    {
+        int[][] misplaced = new int[cells][256];
+        for (int c = 0; c < cells; c++)
+            for (int t = 1; t < 256; t++)
+                misplaced[c][t] = t == c + 1 ? 0 : 1;
+        return sum(misplaced);
+    }
+
+    /**Moves the empty tile of every board in the same direction, like {@link Tiles#tryMove(Tiles.Direction)}.
+     * Boards where the move leaves the board, and boards without an empty tile, stay as they are.
+     *
+     * @param direction the direction of the move
+     * @return number of boards moved
+     */
+    public int move(Tiles.Direction direction)
+    {
+        int dir = direction.ordinal();
+        return IntStream.range(0, chunkCount()).parallel().map(k ->
+        {
+            ByteBuffer chunk = chunks[k];
+            int n = count(k);
+            int blanks = pairs << CHUNK_BITS;
+            int moved = 0;
+            for (int i = 0; i < n; i++)
+            {
+                int blank = chunk.get(blanks | i);
+                if (blank == NO_BLANK)
+                    continue;
+                int from = neighbors.neighbor(blank, dir);
+                if (from < 0)
+                    continue;
+                int tile = nibble(chunk, from, i);
+                int at = ((from >>> 1) << CHUNK_BITS) | i;
+                chunk.put(at, (byte) (chunk.get(at) & ~(NIBBLE << ((from & 1) << 2))));
+                at = ((blank >>> 1) << CHUNK_BITS) | i;      //the empty nibble is 0, so the tile is just added
+                chunk.put(at, (byte) (chunk.get(at) | tile << ((blank & 1) << 2)));
+                chunk.put(blanks | i, (byte) from);
+                moved++;
+            }
+            return moved;
+        }).sum();
+    }
+
+    /**Adds up a value per cell and tile over the cells of every board.
+     *
+     * @param values the value of tile {@code t} in cell {@code c} at {@code values[c][t & 0xFF]}
+     * @return the sum of board {@code i} at {@code i}
+     */
+    private short[] sum(int[][] values)
+    {
+        short[] sums = new short[size];
+        IntStream.range(0, chunkCount()).parallel().forEach(k ->
+        {
+            byte[][] columns = load(k);
+            int n = count(k);
+            int first = k << CHUNK_BITS;
+            for (int c = 0; c < cells; c++)
+            {
+                byte[] column = columns[c];
+                int[] value = values[c];
+                for (int i = 0; i < n; i++)
+                    sums[first + i] += value[column[i] & 0xFF];
+            }
+        });
+        return sums;
+    }
+
+    /**Checks the boards of a chunk.
+     *
+     * @param columns the columns of the chunk
+     * @param n       number of boards in the chunk
+     * @return bit {@code i} set if board {@code i} of the chunk is valid
+     */
+    private long[] valid(byte[][] columns, int n)
+    {
+        int[] seen = new int[n];                        //the numbers seen in every board, all below 16
+        for (int c = 0; c < cells; c++)
+        {
+            byte[] column = columns[c];
+            for (int i = 0; i < n; i++)
+                seen[i] |= 1 << column[i];
+        }
+        int full = (1 << cells) - 1;
+        long[] valid = new long[(n + 63) >>> 6];
+        for (int i = 0; i < n; i++)
+            if (seen[i] == full)
+                valid[i >>> 6] |= 1L << i;
+        return valid;
+    }
+
+    /**Unpacks the columns of a chunk into the arrays of the current thread, one per cell.
+     *
+     * @param k the chunk
+     * @return the columns, the empty cells last
+     */
+    private byte[][] load(int k)
+    {
+        byte[][] copy = columns.get();
+        int n = count(k);
+        for (int p = 0; p < pairs; p++)
+        {
+            byte[] low = copy[2 * p];
+            if (2 * p + 1 == cells)
+            {
+                chunks[k].get(p << CHUNK_BITS, low, 0, n);     //the high nibble of the last cell is always 0
+                continue;
+            }
+            byte[] high = copy[2 * p + 1];
+            chunks[k].get(p << CHUNK_BITS, high, 0, n);
+            for (int i = 0; i < n; i++)                 //read before written, so the pair is split in place
+            {
+                low[i] = (byte) (high[i] & NIBBLE);
+                high[i] = (byte) ((high[i] >>> 4) & NIBBLE);
+            }
+        }
+        chunks[k].get(pairs << CHUNK_BITS, copy[cells], 0, n);
+        return copy;
+    }
+
+    /**Reads a cell of a board of a chunk.
+     *
+     * @param chunk the chunk
+     * @param cell  the cell
+     * @param i     the position of the board in the chunk
+     * @return the tile
+     */
+    private static int nibble(ByteBuffer chunk, int cell, int i)
+    {
+        return chunk.get(((cell >>> 1) << CHUNK_BITS) | i) >>> ((cell & 1) << 2) & NIBBLE;
+    }
+
+    private int chunkCount()
+    {
+        return (size + CHUNK - 1) >>> CHUNK_BITS;
+    }
+
+    private int count(int k)
+    {
+        return Math.min(CHUNK, size - (k << CHUNK_BITS));
+    }
+
+    private void checkLength(byte[] tiles)
+    {
+        if (tiles.length != cells)
+            throw new IllegalArgumentException(tiles.length + " tiles for a board of " + cells + " cells");
+    }
+
+    private void check(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size + " boards");
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Batch of " + size + " " + rows + "x" + cols + " boards";
+    }
+}
@@ -0,0 +1,97 @@
+package am.aua.npuzzle.core;
+
+import java.util.SplittableRandom;
+
+/**
+ * The {@code Zobrist} class hashes boards to 64 bits: the hash is the XOR of one random key per (cell, tile) pair.
+ * Moving a tile from one cell to another changes the hash by two XORs, so it can be kept up to date after every move.
+ * The empty tile has no key, its cell being the only one left. The keys come from a fixed seed,
+ * so a board has the same hash in every run and hashes can be stored.
+ */
+public final class Zobrist
+{
+    /** Largest number of cells and tiles. */
+    private static final int MAX = ConfigurationParser.MAX_CELLS;
+    /** The key of tile {@code t} in cell {@code c} is {@code KEYS[c * MAX + t]}. */
+    private static final long[] KEYS = new long[MAX * MAX];
+
+    static
+    {
+        SplittableRandom random = new SplittableRandom(0x4E50555A5A4C45L);
+        for (int c = 0; c < MAX; c++)
+            for (int t = 1; t < MAX; t++)
+                KEYS[c * MAX + t] = random.nextLong();
+    }
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private Zobrist()
+    {
+    }
+
+    /**
+     * Getter for the key of a tile in a cell.
+     *
+     * @param cell the cell, in row-major order
+     * @param tile the tile
+     * @return the key, 0 for the empty tile
+     */
+    public static long key(int cell, int tile)
+    {
+        return KEYS[cell * MAX + tile];
+    }
+
+    /**
+     * Getter for the change of the hash when a tile slides from a cell to another.
+     *
+     * @param tile the tile
+     * @param from the cell it leaves
+     * @param to   the cell it enters
+     * @return the value to XOR into the hash
+     */
+    public static long move(int tile, int from, int to)
+    {
+        return KEYS[from * MAX + tile] ^ KEYS[to * MAX + tile];
+    }
+
+    /**
+     * Hashes a board.
+     *
+     * @param cells the tiles in row-major order
+     * @return the hash
+     */
+    public static long hash(byte[] cells)
+    {
+        long hash = 0;
+        for (int i = 0; i < cells.length; i++)
+            hash ^= KEYS[i * MAX + cells[i]];
+        return hash;
+    }
+
+    /**
+     * Hashes a packed board, as {@link #hash(byte[])} would hash its cells.
+     *
+     * @param board the board with the tile of cell {@code i} in the nibble {@code i}
+     * @param cells number of cells
+     * @return the hash
+     */
+    public static long hash(long board, int cells)
+    {
+        long hash = 0;
+        for (int i = 0; i < cells; i++)
+            hash ^= KEYS[i * MAX + (int) (board >>> (i << 2) & 0xF)];
+        return hash;
+    }
+
+    /**
+     * Folds a hash to the 32 bits of {@code hashCode}.
+     *
+     * @param hash the 64-bit hash
+     * @return the 32-bit hash
+     */
+    public static int fold(long hash)
+    {
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
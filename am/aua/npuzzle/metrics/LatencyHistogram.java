@@ -0,0 +1,123 @@
+package am.aua.npuzzle.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class counts durations in buckets of powers of two microseconds,
+ * so recording is a bit count and an increment, and percentiles are known within a factor of two.
+ * Bucket {@code i} holds the durations from {@code 2^i} to {@code 2^(i+1) - 1} microseconds, bucket 0 also the shorter ones.
+ * It can be updated and read by any number of threads without locking.
+ */
+public class LatencyHistogram
+{
+    /** Number of buckets: the last one holds everything above 2^39 microseconds, about six days. */
+    private static final int BUCKETS = 40;
+
+    /** The number of durations in every bucket. */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    /** The sum of all the durations in nanoseconds. */
+    private final LongAdder total = new LongAdder();
+    /** The longest duration in nanoseconds. */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Counts a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        long micros = Math.max(1, nanos / 1000);
+        buckets[Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros))].increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Getter for the number of durations.
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (LongAdder bucket : buckets)
+            count += bucket.sum();
+        return count;
+    }
+
+    /**
+     * Finds a percentile.
+     *
+     * @param fraction the fraction of the durations at or below the result, e.g. 0.99
+     * @return the upper end of the bucket of that percentile in microseconds, at most the maximum,
+     *         or 0 if nothing was counted
+     */
+    public long getPercentileMicros(double fraction)
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts[i] = buckets[i].sum();
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            if ((seen += counts[i]) >= rank)
+                return Math.min((2L << i) - 1, getMaxMicros());
+        return getMaxMicros();
+    }
+
+    /**
+     * Getter for the mean duration.
+     *
+     * @return the mean in microseconds, or 0 if nothing was counted
+     */
+    public long getMeanMicros()
+    {
+        long count = getCount();
+        return count == 0 ? 0 : total.sum() / count / 1000;
+    }
+
+    /**
+     * Getter for the longest duration.
+     *
+     * @return the maximum in microseconds
+     */
+    public long getMaxMicros()
+    {
+        return max.get() / 1000;
+    }
+
+    /**
+     * Formats the summary of the histogram as a JSON object.
+     *
+     * @return count, mean, 50th, 90th and 99th percentiles and maximum, in microseconds
+     */
+    public String toJson()
+    {
+        return "{\"count\":" + getCount() + ",\"meanMicros\":" + getMeanMicros()
+                + ",\"p50Micros\":" + getPercentileMicros(0.5) + ",\"p90Micros\":" + getPercentileMicros(0.9)
+                + ",\"p99Micros\":" + getPercentileMicros(0.99) + ",\"maxMicros\":" + getMaxMicros() + "}";
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Latency histogram " + toJson();
+    }
+}
@@ -0,0 +1,29 @@
+package am.aua.npuzzle.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@code LoadEvent} class is the Flight Recorder event of loading a whole configuration store.
+ */
+@Name("am.aua.npuzzle.Load")
+@Label("Configuration Store Load")
+@Category("N-Puzzle")
+@Description("Reading and checking all the configurations of a source")
+public class LoadEvent extends Event
+{
+    /** The file or URL, or {@code null} for a reader. */
+    @Label("Source")
+    public String source;
+
+    /** Number of configurations kept. */
+    @Label("Configurations")
+    public int configurations;
+
+    /** Number of lines rejected. */
+    @Label("Rejected")
+    public int rejected;
+}
@@ -0,0 +1,221 @@
+package am.aua.npuzzle.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code Metrics} class counts what the program does: moves, solvability and validity checks,
+ * configurations loaded and rejected, sources read from their cached copy, and the searches of every heuristic with their nodes and durations.
+ * <p>
+ * Counting is switched on with the system property {@code npuzzle.metrics=true}. The switch is read once into a
+ * {@code static final} field, so when it is off the JIT compiler removes the calls altogether, and when it is on
+ * every event is a {@code LongAdder} increment, which does not contend between threads.
+ * The phases of loading, parsing and solving are also reported as Flight Recorder events,
+ * {@link LoadEvent}, {@link ParseEvent} and {@link SolveEvent}, whatever the switch;
+ * they cost next to nothing unless a recording is running.
+ */
+public final class Metrics
+{
+    /** Whether the counters are updated. */
+    public static final boolean ENABLED = Boolean.getBoolean("npuzzle.metrics");
+
+    /** When the counting started, for the rates. */
+    private static final long START = System.nanoTime();
+    /** Number of moves made on {@code Tiles}. */
+    private static final LongAdder MOVES = new LongAdder();
+    /** Number of calls to {@code Tiles.isSolvable}. */
+    private static final LongAdder SOLVABILITY_CHECKS = new LongAdder();
+    /** Number of calls to {@code Tiles.ensureValidity}. */
+    private static final LongAdder VALIDITY_CHECKS = new LongAdder();
+    /** Number of configurations read by the stores and accepted. */
+    private static final LongAdder LOADED = new LongAdder();
+    /** Number of configurations read by the stores and rejected. */
+    private static final LongAdder REJECTED = new LongAdder();
+    /** Number of times a cached copy was read instead of a source. */
+    private static final LongAdder CACHE_FALLBACKS = new LongAdder();
+    /** The searches of every heuristic. */
+    private static final Map<String, Searches> SEARCHES = new ConcurrentHashMap<>();
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private Metrics()
+    {
+    }
+
+    /**
+     * Counts a move.
+     */
+    public static void move()
+    {
+        if (ENABLED)
+            MOVES.increment();
+    }
+
+    /**
+     * Counts a solvability check.
+     */
+    public static void solvabilityCheck()
+    {
+        if (ENABLED)
+            SOLVABILITY_CHECKS.increment();
+    }
+
+    /**
+     * Counts a validity check.
+     */
+    public static void validityCheck()
+    {
+        if (ENABLED)
+            VALIDITY_CHECKS.increment();
+    }
+
+    /**
+     * Counts a configuration read by a store.
+     *
+     * @param accepted whether it was valid and kept
+     */
+    public static void configuration(boolean accepted)
+    {
+        if (ENABLED)
+            (accepted ? LOADED : REJECTED).increment();
+    }
+
+    /**
+     * Counts a cached copy read instead of a source that failed or stalled.
+     */
+    public static void cacheFallback()
+    {
+        if (ENABLED)
+            CACHE_FALLBACKS.increment();
+    }
+
+    /**
+     * Counts a search.
+     *
+     * @param heuristic the name of the heuristic, or of the search if it has none
+     * @param nodes     number of boards generated
+     * @param nanos     duration of the search
+     */
+    public static void search(String heuristic, long nodes, long nanos)
+    {
+        if (ENABLED)
+            SEARCHES.computeIfAbsent(heuristic, h -> new Searches()).add(nodes, nanos);
+    }
+
+    /**
+     * Getter for the number of moves.
+     *
+     * @return moves counted
+     */
+    public static long getMoves()
+    {
+        return MOVES.sum();
+    }
+
+    /**
+     * Getter for the number of solvability checks.
+     *
+     * @return checks counted
+     */
+    public static long getSolvabilityChecks()
+    {
+        return SOLVABILITY_CHECKS.sum();
+    }
+
+    /**
+     * Getter for the number of validity checks.
+     *
+     * @return checks counted
+     */
+    public static long getValidityChecks()
+    {
+        return VALIDITY_CHECKS.sum();
+    }
+
+    /**
+     * Getter for the number of configurations accepted by the stores.
+     *
+     * @return configurations counted
+     */
+    public static long getLoaded()
+    {
+        return LOADED.sum();
+    }
+
+    /**
+     * Getter for the number of configurations rejected by the stores.
+     *
+     * @return configurations counted
+     */
+    public static long getRejected()
+    {
+        return REJECTED.sum();
+    }
+
+    /**
+     * Getter for the number of cached copies read instead of a source.
+     *
+     * @return fallbacks counted
+     */
+    public static long getCacheFallbacks()
+    {
+        return CACHE_FALLBACKS.sum();
+    }
+
+    /**
+     * Formats all the counters as a JSON object, with the rates per second since the program started.
+     *
+     * @return the counters
+     */
+    public static String toJson()
+    {
+        double seconds = Math.max(1e-9, (System.nanoTime() - START) / 1e9);
+        StringBuilder json = new StringBuilder("{\"enabled\":").append(ENABLED)
+                .append(",\"uptimeSeconds\":").append((long) seconds)
+                .append(",\"moves\":{\"count\":").append(getMoves())
+                .append(",\"perSecond\":").append((long) (getMoves() / seconds)).append('}')
+                .append(",\"isSolvable\":").append(getSolvabilityChecks())
+                .append(",\"ensureValidity\":").append(getValidityChecks())
+                .append(",\"configurations\":{\"loaded\":").append(getLoaded())
+                .append(",\"rejected\":").append(getRejected())
+                .append(",\"cacheFallbacks\":").append(getCacheFallbacks()).append('}')
+                .append(",\"searches\":{");
+        String separator = "";
+        for (Map.Entry<String, Searches> e : new ConcurrentSkipListMap<>(SEARCHES).entrySet())
+        {
+            json.append(separator).append('"').append(e.getKey()).append("\":").append(e.getValue().toJson());
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * The searches of one heuristic.
+     */
+    private static final class Searches
+    {
+        final LongAdder nodes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LatencyHistogram durations = new LatencyHistogram();
+
+        void add(long nodes, long nanos)
+        {
+            this.nodes.add(nodes);
+            this.nanos.add(nanos);
+            durations.record(nanos);
+        }
+
+        /**
+         * @return the number of searches, the nodes, the nodes per second of searching and the durations
+         */
+        String toJson()
+        {
+            long n = nodes.sum(), t = nanos.sum();
+            return "{\"nodes\":" + n + ",\"nodesPerSecond\":" + (t == 0 ? 0 : (long) (n * 1e9 / t))
+                    + ",\"durations\":" + durations.toJson() + "}";
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package am.aua.npuzzle.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * The {@code ParseEvent} class is the Flight Recorder event of parsing and checking one configuration.
+ * There is one per configuration, so it is off by default and only the slow ones are kept when it is on.
+ */
+@Name("am.aua.npuzzle.Parse")
+@Label("Configuration Parse")
+@Category("N-Puzzle")
+@Description("Parsing and checking the data of one configuration")
+@Enabled(false)
+@Threshold("1 ms")
+public class ParseEvent extends Event
+{
+    /** The data of the configuration. */
+    @Label("Data")
+    public String data;
+
+    /** Whether it is a valid board. */
+    @Label("Valid")
+    public boolean valid;
+}
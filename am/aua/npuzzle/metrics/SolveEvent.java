@@ -0,0 +1,37 @@
+package am.aua.npuzzle.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@code SolveEvent} class is the Flight Recorder event of the search of one board.
+ */
+@Name("am.aua.npuzzle.Solve")
+@Label("Solve")
+@Category("N-Puzzle")
+@Description("The search of an optimal solution of one board")
+public class SolveEvent extends Event
+{
+    /** The class of the solver. */
+    @Label("Solver")
+    public String solver;
+
+    /** The heuristic, or the search if it has none. */
+    @Label("Heuristic")
+    public String heuristic;
+
+    /** Number of moves of the solution, -1 if the board is not solvable or the search was cancelled. */
+    @Label("Length")
+    public int length;
+
+    /** Number of boards generated. */
+    @Label("Nodes")
+    public long nodes;
+
+    /** Whether the search was cancelled before it finished. */
+    @Label("Cancelled")
+    public boolean cancelled;
+}
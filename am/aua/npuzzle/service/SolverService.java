@@ -0,0 +1,449 @@
+package am.aua.npuzzle.service;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.Tiles;
+import am.aua.npuzzle.metrics.LatencyHistogram;
+import am.aua.npuzzle.metrics.Metrics;
+import am.aua.npuzzle.solver.Heuristic;
+import am.aua.npuzzle.solver.IDAStarSolver;
+import am.aua.npuzzle.solver.ManhattanHeuristic;
+import am.aua.npuzzle.solver.PatternDatabaseHeuristic;
+import am.aua.npuzzle.solver.SearchBoard;
+import am.aua.npuzzle.solver.Solution;
+import am.aua.npuzzle.solver.SolutionCache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code SolverService} class answers solver requests over HTTP with JSON, on the JDK's {@code HttpServer}.
+ * <p>
+ * Every endpoint takes configurations in the usual text form, e.g. {@code 1 2 3 : 4 5 6 : 7 8 0}: one in the
+ * {@code config} query parameter of a GET, or a batch of them, one per line, in the body of a POST.
+ * The answer has one result per configuration, in order:
+ * <ul>
+ *     <li>{@code /solvable}: whether the board can be solved</li>
+ *     <li>{@code /solve}: the moves of an optimal solution</li>
+ *     <li>{@code /hint}: the first move of an optimal solution</li>
+ *     <li>{@code /metrics}: the latency histogram and the rejections of every endpoint, the cache counters
+ *     and the counters of {@code Metrics}</li>
+ * </ul>
+ * Solutions are cached, so a board asked for again is answered without searching. Every request has a time limit
+ * for all its searches together: a search still running when it is reached is abandoned, and that board and the
+ * boards after it that are not in the cache get an error of their own instead of a search.
+ * <p>
+ * Requests are handled by a fixed pool of threads. At most {@code maxInFlight} requests are admitted at a time;
+ * the others are answered at once with {@code 503 Service Unavailable} and {@code Retry-After}, so clients back off
+ * instead of piling up behind slow searches. The pool has a few threads more than that so rejections stay fast.
+ */
+public class SolverService
+{
+    /** Default port. */
+    public static final int DEFAULT_PORT = 8080;
+    /** Largest request body. */
+    private static final int MAX_BODY = 1 << 20;
+    /** Largest number of configurations in a batch. */
+    private static final int MAX_BATCH = 1000;
+    /** Threads beyond the admission limit, which only answer rejections. */
+    private static final int SPARE_THREADS = 4;
+    /** Number of solutions kept in memory. */
+    private static final int CACHE_CAPACITY = 1 << 18;
+    /** The endpoints solving something. */
+    private static final String[] ENDPOINTS = {"/solvable", "/solve", "/hint"};
+
+    /** The server. */
+    private final HttpServer server;
+    /** The threads handling the requests. */
+    private final ExecutorService workers;
+    /** Interrupts searches past the time limit of their request. */
+    private final ScheduledExecutorService alarms;
+    /** Largest number of requests handled at a time. */
+    private final int maxInFlight;
+    /** The requests that can be admitted. */
+    private final Semaphore admission;
+    /** The estimate shared by all the searches; heuristics keep no state. */
+    private final Heuristic heuristic;
+    /** One solver per worker thread, since a solver cannot be shared. */
+    private final ThreadLocal<IDAStarSolver> solvers;
+    /** The solutions already found. */
+    private final SolutionCache cache;
+    /** The longest time spent searching for one request, in milliseconds. */
+    private final long limitMillis;
+    /** The latency of every endpoint. */
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    /** The requests turned away by every endpoint. */
+    private final Map<String, LongAdder> rejections = new LinkedHashMap<>();
+
+    /**
+     * Creates a service; {@link #start()} starts it.
+     *
+     * @param port        the port to listen on, 0 for any free port
+     * @param maxInFlight largest number of requests handled at a time
+     * @param heuristic   the estimate used by every search
+     * @param cache       the solutions already found, possibly backed by a file
+     * @param limitMillis the longest time spent searching for one request, in milliseconds
+     * @throws IOException if the port cannot be bound
+     */
+    public SolverService(int port, int maxInFlight, Heuristic heuristic, SolutionCache cache, long limitMillis) throws IOException
+    {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("Invalid admission limit " + maxInFlight);
+        this.heuristic = heuristic;
+        this.cache = cache;
+        this.limitMillis = limitMillis;
+        this.maxInFlight = maxInFlight;
+        this.admission = new Semaphore(maxInFlight);
+        this.solvers = ThreadLocal.withInitial(() -> new IDAStarSolver(this.heuristic));
+        this.workers = Executors.newFixedThreadPool(maxInFlight + SPARE_THREADS);
+        this.alarms = Executors.newSingleThreadScheduledExecutor(r ->
+        {
+            Thread t = new Thread(r, "solver-service-alarms");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(workers);
+        for (String endpoint : ENDPOINTS)
+        {
+            latencies.put(endpoint, new LatencyHistogram());
+            rejections.put(endpoint, new LongAdder());
+            server.createContext(endpoint, this::handle);
+        }
+        server.createContext("/metrics", this::metrics);
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops answering requests, waiting up to a second for the ones being handled.
+     */
+    public void stop()
+    {
+        server.stop(1);
+        workers.shutdownNow();
+        alarms.shutdownNow();
+    }
+
+    /**
+     * Getter for the port listened on.
+     *
+     * @return the port
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a request to one of the solving endpoints.
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        long begin = System.nanoTime();
+        String endpoint = exchange.getHttpContext().getPath();
+        try (exchange)
+        {
+            if (!admission.tryAcquire())
+            {
+                rejections.get(endpoint).increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "{\"error\":\"overloaded\"}");
+                return;
+            }
+            try
+            {
+                List<String> configs = read(exchange);
+                if (configs == null)
+                    return;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limitMillis);
+                StringBuilder json = new StringBuilder("{\"results\":[");
+                for (int i = 0; i < configs.size(); i++)
+                {
+                    if (i > 0)
+                        json.append(',');
+                    answer(endpoint, configs.get(i), deadline, json);
+                }
+                send(exchange, 200, json.append("]}").toString());
+            }
+            finally
+            {
+                admission.release();
+            }
+        }
+        finally
+        {
+            latencies.get(endpoint).record(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Reads the configurations of a request, answering it with an error if they cannot be read.
+     *
+     * @return the configurations, or {@code null} if the request was answered
+     */
+    private List<String> read(HttpExchange exchange) throws IOException
+    {
+        List<String> configs = new ArrayList<>();
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET"))
+        {
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null)
+                for (String parameter : query.split("&"))
+                    if (parameter.startsWith("config="))
+                        configs.add(URLDecoder.decode(parameter.substring(7), StandardCharsets.UTF_8));
+        }
+        else if (method.equals("POST"))
+        {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody())
+            {
+                byte[] buffer = new byte[8192];
+                for (int n; (n = in.read(buffer)) > 0; )
+                {
+                    body.write(buffer, 0, n);
+                    if (body.size() > MAX_BODY)
+                    {
+                        send(exchange, 413, "{\"error\":\"body larger than " + MAX_BODY + " bytes\"}");
+                        return null;
+                    }
+                }
+            }
+            for (String line : body.toString(StandardCharsets.UTF_8).split("\\R"))
+                if (!line.isBlank())
+                    configs.add(line.trim());
+        }
+        else
+        {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            send(exchange, 405, "{\"error\":\"method " + escape(method) + " not allowed\"}");
+            return null;
+        }
+        if (configs.isEmpty())
+        {
+            send(exchange, 400, "{\"error\":\"no configuration\"}");
+            return null;
+        }
+        if (configs.size() > MAX_BATCH)
+        {
+            send(exchange, 413, "{\"error\":\"more than " + MAX_BATCH + " configurations\"}");
+            return null;
+        }
+        return configs;
+    }
+
+    /**
+     * Appends the result of one configuration.
+     *
+     * @param deadline the {@code System.nanoTime()} at which the searches of the request stop
+     */
+    private void answer(String endpoint, String data, long deadline, StringBuilder json)
+    {
+        json.append("{\"config\":\"").append(escape(data)).append('"');
+        try
+        {
+            SearchBoard board = SearchBoard.of(new Configuration(data));
+            boolean solvable = board.isSolvable();
+            json.append(",\"solvable\":").append(solvable);
+            if (solvable && !endpoint.equals("/solvable"))
+            {
+                Solution solution = solve(board, deadline);
+                if (endpoint.equals("/hint"))
+                    json.append(",\"hint\":").append(solution.getLength() == 0 ? "null"
+                            : "\"" + solution.getMoves()[0] + "\"");
+                else
+                {
+                    json.append(",\"length\":").append(solution.getLength()).append(",\"moves\":[");
+                    String separator = "";
+                    for (Tiles.Direction move : solution.getMoves())
+                    {
+                        json.append(separator).append('"').append(move).append('"');
+                        separator = ",";
+                    }
+                    json.append(']');
+                }
+            }
+        }
+        catch (CancellationException e)
+        {
+            json.append(",\"error\":\"no solution found within the request limit of ").append(limitMillis).append(" ms\"");
+        }
+        catch (Exception e)
+        {
+            json.append(",\"error\":\"").append(escape(String.valueOf(e.getMessage()))).append('"');
+        }
+        json.append('}');
+    }
+
+    /**
+     * Finds the solution of a solvable board in the cache, or by a search interrupted at the deadline of the request.
+     *
+     * @param deadline the {@code System.nanoTime()} at which the searches of the request stop
+     * @throws CancellationException if the deadline was reached, before or during the search
+     */
+    private Solution solve(SearchBoard board, long deadline) throws IOException
+    {
+        Solution solution = cache.get(board);
+        if (solution != null)
+            return solution;
+        long left = deadline - System.nanoTime();
+        if (left <= 0)
+            throw new CancellationException("Request time limit reached");
+        Thread current = Thread.currentThread();
+        ScheduledFuture<?> alarm = alarms.schedule(current::interrupt, left, TimeUnit.NANOSECONDS);
+        try
+        {
+            solution = solvers.get().solve(board);
+        }
+        finally
+        {
+            if (!alarm.cancel(false))
+            {
+                try
+                {
+                    alarm.get();                            //let an alarm already going off finish
+                }
+                catch (Exception e)
+                {
+                    //the interrupt is cleared below either way
+                }
+            }
+            Thread.interrupted();
+        }
+        cache.put(board, solution);
+        return solution;
+    }
+
+    /**
+     * Answers {@code /metrics}.
+     */
+    private void metrics(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            StringBuilder json = new StringBuilder("{\"endpoints\":{");
+            String separator = "";
+            for (String endpoint : ENDPOINTS)
+            {
+                json.append(separator).append('"').append(endpoint).append("\":{\"latency\":")
+                        .append(latencies.get(endpoint).toJson())
+                        .append(",\"rejected\":").append(rejections.get(endpoint).sum()).append('}');
+                separator = ",";
+            }
+            json.append("},\"cache\":{\"hits\":").append(cache.getHits())
+                    .append(",\"diskHits\":").append(cache.getDiskHits())
+                    .append(",\"misses\":").append(cache.getMisses())
+                    .append(",\"evictions\":").append(cache.getEvictions())
+                    .append("},\"inFlight\":").append(maxInFlight - admission.availablePermits())
+                    .append(",\"process\":").append(Metrics.toJson()).append('}');
+            send(exchange, 200, json.toString());
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Escapes a string for a JSON string literal.
+     */
+    private static String escape(String s)
+    {
+        StringBuilder escaped = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                escaped.append('\\').append(c);
+            else if (c < 0x20)
+                escaped.append(String.format("\\u%04x", (int) c));
+            else
+                escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Solver service on port " + getPort() + " using " + heuristic.getClass().getSimpleName();
+    }
+
+    /**Runs the service until the process is stopped.
+     *
+     * @param args command-line arguments, all optional: {@code --port <port>}, {@code --max-in-flight <requests>},
+     *             {@code --limit <milliseconds>}, {@code --pdb <pattern database>}, {@code --cache <file>}
+     * @throws IOException if the port cannot be bound or a file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = DEFAULT_PORT;
+        int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+        long limit = 10_000;
+        Path pdb = null, cacheFile = null;
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "--port": port = Integer.parseInt(args[++i]); break;
+                    case "--max-in-flight": maxInFlight = Integer.parseInt(args[++i]); break;
+                    case "--limit": limit = Long.parseLong(args[++i]); break;
+                    case "--pdb": pdb = Paths.get(args[++i]); break;
+                    case "--cache": cacheFile = Paths.get(args[++i]); break;
+                    default: throw new IllegalArgumentException(args[i]);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            System.out.println("Usage: java am.aua.npuzzle.service.SolverService [--port <port>] [--max-in-flight <requests>]"
+                    + " [--limit <milliseconds>] [--pdb <pattern database>] [--cache <file>]");
+            return;
+        }
+        Heuristic heuristic = pdb == null ? new ManhattanHeuristic() : PatternDatabaseHeuristic.load(pdb);
+        SolutionCache cache = cacheFile == null ? new SolutionCache(CACHE_CAPACITY) : new SolutionCache(CACHE_CAPACITY, cacheFile);
+        SolverService service = new SolverService(port, maxInFlight, heuristic, cache, limit);
+        service.start();
+        System.out.println(service + ", admitting " + maxInFlight + " request(s) at a time");
+    }
+}
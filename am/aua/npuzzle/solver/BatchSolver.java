@@ -0,0 +1,305 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.ConfigurationStore;
+import am.aua.npuzzle.metrics.Metrics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * The {@code BatchSolver} class solves every configuration of a {@code ConfigurationStore},
+ * or of any other sequence of configurations, in parallel on a fork-join pool.
+ * Results are written as soon as they are ready, but always in the input order, one line per configuration:
+ * {@code index length nodes milliseconds}, with length -1 for unsolvable configurations
+ * and {@code index error message} for invalid ones.
+ * With a {@code SolutionCache}, boards solved before are answered from the cache instead of being searched again.
+ * With a {@code SolutionWriter}, the boards and their moves are also stored for {@code SolutionVerifier}.
+ */
+public class BatchSolver
+{
+    /** Number of solutions kept in memory by the cache of {@link #main(String[])}. */
+    private static final int CACHE_CAPACITY = 1 << 20;
+
+    /** The estimate shared by all workers; heuristics keep no state. */
+    private final Heuristic heuristic;
+    /** The pool running the searches. */
+    private final ForkJoinPool pool;
+    /** One solver per worker thread, since a solver cannot be shared. */
+    private final ThreadLocal<IDAStarSolver> solvers;
+    /** The solutions of boards already solved, or {@code null}. */
+    private final SolutionCache cache;
+
+    /**
+     * Creates a batch solver using Manhattan distance plus linear conflict
+     * and one worker per available processor.
+     * Random 15-puzzles may take seconds each with this estimate; a pattern database is much faster.
+     */
+    public BatchSolver()
+    {
+        this(new ManhattanHeuristic(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch solver.
+     *
+     * @param heuristic   the estimate used by every search
+     * @param parallelism number of worker threads
+     */
+    public BatchSolver(Heuristic heuristic, int parallelism)
+    {
+        this(heuristic, parallelism, null);
+    }
+
+    /**
+     * Creates a batch solver checking a cache before every search.
+     *
+     * @param heuristic   the estimate used by every search
+     * @param parallelism number of worker threads
+     * @param cache       the solutions of boards already solved, or {@code null}
+     */
+    public BatchSolver(Heuristic heuristic, int parallelism, SolutionCache cache)
+    {
+        this.heuristic = heuristic;
+        this.cache = cache;
+        this.pool = new ForkJoinPool(parallelism);
+        this.solvers = ThreadLocal.withInitial(() -> new IDAStarSolver(this.heuristic));
+    }
+
+    /**
+     * Solves every configuration and writes one line per configuration.
+     * At most a few configurations per worker are being solved at a time, so the configurations do not pile up
+     * in memory when they come from {@code ConfigurationStore.stream}. A hard board keeps only its own worker busy:
+     * the others go on with the next configurations, whose results wait in memory until it is written.
+     * The cache, if any, is warmed first when the configurations are a loaded {@code ConfigurationStore}.
+     *
+     * @param configs the configurations to solve, for example a {@code ConfigurationStore}
+     * @param out     where the results are written, in the order of the configurations
+     * @throws IOException if writing fails
+     */
+    public void solve(Iterable<Configuration> configs, Writer out) throws IOException
+    {
+        solve(configs, out, null);
+    }
+
+    /**
+     * Solves every configuration, writes one line per configuration and stores the solutions.
+     *
+     * @param configs   the configurations to solve, for example a {@code ConfigurationStore}
+     * @param out       where the results are written, in the order of the configurations
+     * @param solutions where the boards and their solutions are stored in the same order, or {@code null}
+     * @throws IOException if writing fails or the thread is interrupted
+     */
+    public void solve(Iterable<Configuration> configs, Writer out, SolutionWriter solutions) throws IOException
+    {
+        if (cache != null && configs instanceof ConfigurationStore)    //already in memory, so cheap to go over twice
+            cache.warm(configs);
+        Semaphore running = new Semaphore(4 * pool.getParallelism());
+        BlockingQueue<Result> done = new LinkedBlockingQueue<>();
+        Map<Integer, Result> early = new HashMap<>();          //results waiting for an earlier configuration
+        int index = 0;
+        int next = 0;
+        try
+        {
+            for (Configuration config : configs)
+            {
+                while (!running.tryAcquire())
+                    next = write(done.take(), early, next, out, solutions);
+                final int i = index++;
+                pool.execute(() ->
+                {
+                    Result result = null;
+                    try
+                    {
+                        result = solve(i, config);
+                    }
+                    finally
+                    {
+                        running.release();                      //before the result is seen, so a waiting loop finds a permit
+                        done.add(result != null ? result
+                                : new Result(i, config, null, i + " error search failed" + System.lineSeparator()));
+                    }
+                });
+                for (Result result; (result = done.poll()) != null; )
+                    next = write(result, early, next, out, solutions);
+            }
+            while (next < index)
+                next = write(done.take(), early, next, out, solutions);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted after " + next + " configuration(s)");
+        }
+        out.flush();
+    }
+
+    /**
+     * Takes a finished result and writes, in order, every result that is no longer waiting for an earlier one.
+     *
+     * @param result    the finished result
+     * @param early     the finished results waiting for an earlier configuration
+     * @param next      the index of the next result to write
+     * @param out       where the result lines are written
+     * @param solutions where the solutions are stored, or {@code null}
+     * @return the index of the next result to write
+     * @throws IOException if writing fails
+     */
+    private static int write(Result result, Map<Integer, Result> early, int next, Writer out,
+                             SolutionWriter solutions) throws IOException
+    {
+        early.put(result.index, result);
+        for (Result r; (r = early.remove(next)) != null; next++)
+            write(r, out, solutions);
+        return next;
+    }
+
+    /**
+     * Writes the result of one configuration.
+     *
+     * @param result    the result
+     * @param out       where the result line is written
+     * @param solutions where the solution is stored, or {@code null}
+     * @throws IOException if writing fails
+     */
+    private static void write(Result result, Writer out, SolutionWriter solutions) throws IOException
+    {
+        out.write(result.line);
+        if (solutions != null)
+            solutions.write(result.config, result.solution);
+    }
+
+    /**
+     * Solves a single configuration on the current worker.
+     *
+     * @param index  the position of the configuration in the store
+     * @param config the configuration
+     * @return the result
+     */
+    private Result solve(int index, Configuration config)
+    {
+        try
+        {
+            Solution solution = cache == null ? solvers.get().solve(config)
+                    : cache.solve(SearchBoard.of(config), solvers.get());
+            if (solution == null)
+                return new Result(index, config, null, index + " -1 0 0" + System.lineSeparator());
+            return new Result(index, config, solution, index + " " + solution.getLength() + " "
+                    + solution.getNodesExpanded() + " " + solution.getTimeNanos() / 1_000_000 + System.lineSeparator());
+        }
+        catch (Exception e)
+        {
+            return new Result(index, config, null, index + " error " + e.getMessage() + System.lineSeparator());
+        }
+    }
+
+    /**
+     * The {@code Result} class holds what is written for one configuration.
+     */
+    private static final class Result
+    {
+        /** The position of the configuration. */
+        private final int index;
+        /** The configuration. */
+        private final Configuration config;
+        /** Its solution, or {@code null} if it has none. */
+        private final Solution solution;
+        /** The result line. */
+        private final String line;
+
+        private Result(int index, Configuration config, Solution solution, String line)
+        {
+            this.index = index;
+            this.config = config;
+            this.solution = solution;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Batch solver on " + pool.getParallelism() + " thread(s) using " + heuristic.getClass().getSimpleName();
+    }
+
+    /**Solves a whole configuration store.
+     * With a cache file the store is loaded first and the cache warmed from it; otherwise it is streamed.
+     *
+     * @param args command-line arguments: source (URL or file), output file, optionally a pattern database file,
+     *             then optionally {@code --cache <file>} and {@code --solutions <file>}
+     * @throws IOException if loading or writing fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path cacheFile = null;
+        Path solutionFile = null;
+        int count = args.length;
+        while (count >= 4 && args[count - 2].startsWith("--"))
+        {
+            if (args[count - 2].equals("--cache"))
+                cacheFile = Paths.get(args[count - 1]);
+            else if (args[count - 2].equals("--solutions"))
+                solutionFile = Paths.get(args[count - 1]);
+            else
+                break;
+            count -= 2;
+        }
+        if (count < 2 || count > 3)
+        {
+            System.out.println("Usage: java am.aua.npuzzle.solver.BatchSolver <path/url to store> <output file> [pattern database] [--cache <file>] [--solutions <file>]");
+            return;
+        }
+        Heuristic heuristic = count == 3
+                ? PatternDatabaseHeuristic.load(Paths.get(args[2]))
+                : new ManhattanHeuristic();
+        SolutionCache cache = cacheFile == null ? null : new SolutionCache(CACHE_CAPACITY, cacheFile);
+        BatchSolver solver = new BatchSolver(heuristic, Runtime.getRuntime().availableProcessors(), cache);
+        try (Writer out = new BufferedWriter(new FileWriter(args[1]));
+             SolutionWriter solutions = solutionFile == null ? null : new SolutionWriter(solutionFile))
+        {
+            if (cache == null)
+                try (Stream<Configuration> configs = ConfigurationStore.stream(args[0]))
+                {
+                    solver.solve(configs::iterator, out, solutions);
+                }
+            else
+            {
+                solver.solve(new ConfigurationStore(args[0]), out, solutions);
+                System.out.println(cache);
+            }
+            if (solutions != null)
+                System.out.println(solutions.getCount() + " solutions written to " + solutionFile);
+        }
+        finally
+        {
+            solver.shutdown();
+            if (cache != null)
+                cache.close();
+        }
+        if (Metrics.ENABLED)
+            System.out.println(Metrics.toJson());
+    }
+}
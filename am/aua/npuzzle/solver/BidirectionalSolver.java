@@ -0,0 +1,255 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.ConfigurationFormatException;
+import am.aua.npuzzle.core.InvalidConfigurationException;
+import am.aua.npuzzle.core.LongTiles;
+import am.aua.npuzzle.core.NeighborTable;
+import am.aua.npuzzle.core.Tiles;
+import am.aua.npuzzle.metrics.SolveEvent;
+
+import java.util.Arrays;
+
+/**
+ * The {@code BidirectionalSolver} class finds optimal solutions with a breadth-first search from the board
+ * and another from the goal, meeting in the middle. Boards are packed into {@code long}s like {@code LongTiles},
+ * and every side keeps its boards in a primitive hash map with the move that reached them and their depth.
+ * <p>
+ * It is the fastest solver for boards a few dozen moves from the goal, where IDA* spends most of its time
+ * expanding the same boards again at every iteration. The work grows exponentially with the distance though,
+ * so when the two sides together hold more than {@code maxStates} boards the search is abandoned and the board
+ * is solved with IDA* instead. Boards of more than 16 cells go to IDA* directly.
+ * An instance must not be used by several threads at the same time.
+ */
+public class BidirectionalSolver
+{
+    /** Default limit on the number of boards held, about 100 MB. */
+    public static final int DEFAULT_MAX_STATES = 1 << 22;
+
+    /** Marks the root of a side in the move bits of a value. */
+    private static final int ROOT = 4;
+    /** Ordinal of the opposite of every direction. */
+    private static final int[] OPPOSITE = {1, 0, 3, 2};
+    /** Directions by ordinal. */
+    private static final Tiles.Direction[] DIRECTIONS = Tiles.Direction.values();
+
+    /** Limit on the number of boards held by both sides. */
+    private final int maxStates;
+    /** The solver used beyond the limit. */
+    private final IDAStarSolver fallback;
+    /** Number of boards generated by the last search. */
+    private long nodes;
+
+    /**
+     * Creates a solver with the default limit, falling back to IDA* with Manhattan distance plus linear conflict.
+     */
+    public BidirectionalSolver()
+    {
+        this(DEFAULT_MAX_STATES, new IDAStarSolver());
+    }
+
+    /**
+     * Creates a solver.
+     *
+     * @param maxStates limit on the number of boards held by both sides
+     * @param fallback  the solver used when the limit is reached
+     */
+    public BidirectionalSolver(int maxStates, IDAStarSolver fallback)
+    {
+        if (maxStates < 2)
+            throw new IllegalArgumentException("Invalid state limit " + maxStates);
+        this.maxStates = maxStates;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Finds an optimal solution of a configuration.
+     *
+     * @param config the configuration to solve
+     * @return the solution, or {@code null} if the configuration is not solvable
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public Solution solve(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        return solve(SearchBoard.of(config));
+    }
+
+    /**
+     * Finds an optimal solution of a board. The board itself is not changed.
+     *
+     * @param tiles the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    public Solution solve(Tiles tiles)
+    {
+        return solve(SearchBoard.of(tiles));
+    }
+
+    /**
+     * Finds an optimal solution of a search board. The board is not changed.
+     * A search that falls back to IDA* is reported as a cancelled breadth-first search, then by the IDA* solver.
+     * Boards too large to pack go straight to IDA*.
+     *
+     * @param start the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    public Solution solve(SearchBoard start)
+    {
+        int cells = start.size();
+        if (cells > LongTiles.MAX_CELLS)
+            return fallback.solve(start);
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        long begin = System.nanoTime();
+        if (!start.isSolvable())
+            return Solution.report(event, this, "BFS", null);
+        long board = 0;
+        for (int i = 0; i < cells; i++)
+            board |= (long) start.tileAt(i) << (i << 2);
+        Tiles.Direction[] moves = search(board, LongTiles.goal(cells), NeighborTable.of(start.getHeight(), start.getWidth()), cells);
+        if (moves == null)
+        {
+            Solution.cancelled(event, this, "BFS", nodes, System.nanoTime() - begin);     //the work abandoned for IDA*
+            return fallback.solve(start);
+        }
+        return Solution.report(event, this, "BFS", new Solution(moves, nodes, System.nanoTime() - begin));
+    }
+
+    /**
+     * Searches from both ends, always expanding the whole next level of the side with the smaller frontier.
+     * A level is finished even after the sides meet, so the shortest of the meetings it finds is kept.
+     *
+     * @return the moves, or {@code null} if the limit was reached
+     */
+    private Tiles.Direction[] search(long start, long goal, NeighborTable table, int cells)
+    {
+        nodes = 0;
+        if (start == goal)
+            return new Tiles.Direction[0];
+        LongIntMap[] seen = {new LongIntMap(1024), new LongIntMap(1024)};
+        long[][] frontier = {{start}, {goal}};
+        int[] size = {1, 1};
+        int[] depth = {0, 0};
+        seen[0].putIfAbsent(start, ROOT);
+        seen[1].putIfAbsent(goal, ROOT);
+        long mask = LongTiles.mask(cells);
+
+        while (size[0] > 0 && size[1] > 0)
+        {
+            int side = size[0] <= size[1] ? 0 : 1;
+            LongIntMap mine = seen[side], theirs = seen[1 - side];
+            long[] next = new long[Math.max(16, 2 * size[side])];
+            int count = 0;
+            int best = Integer.MAX_VALUE;
+            long bestBoard = 0, bestParent = 0;
+            int bestMove = 0;
+            for (int f = 0; f < size[side]; f++)
+            {
+                long board = frontier[side][f];
+                int blank = LongTiles.emptyCell(board, mask);
+                int last = mine.get(board) & 7;
+                for (int dir = 0; dir < 4; dir++)
+                {
+                    if (last != ROOT && dir == OPPOSITE[last])
+                        continue;
+                    int from = table.neighbor(blank, dir);
+                    if (from < 0)
+                        continue;
+                    long child = slide(board, from, blank);
+                    nodes++;
+                    int other = theirs.get(child);
+                    if (other != LongIntMap.MISSING)
+                    {
+                        int length = depth[side] + 1 + (other >>> 3);
+                        if (length < best)
+                        {
+                            best = length;
+                            bestBoard = child;
+                            bestParent = board;
+                            bestMove = dir;
+                        }
+                        continue;
+                    }
+                    if (best == Integer.MAX_VALUE && mine.putIfAbsent(child, ((depth[side] + 1) << 3) | dir))
+                    {
+                        if (count == next.length)
+                            next = Arrays.copyOf(next, 2 * next.length);
+                        next[count++] = child;
+                        if (mine.size() + theirs.size() > maxStates)
+                            return null;
+                    }
+                }
+            }
+            if (best != Integer.MAX_VALUE)
+                return side == 0 ? join(bestParent, bestMove, bestBoard, seen[0], seen[1], table, mask)
+                        : join(bestBoard, OPPOSITE[bestMove], bestParent, seen[0], seen[1], table, mask);
+            frontier[side] = next;
+            size[side] = count;
+            depth[side]++;
+        }
+        return null;                                    //not reached for solvable boards
+    }
+
+    /**
+     * Builds the moves of a meeting: the path from the start to {@code before}, the move to {@code after},
+     * then the path from {@code after} to the goal.
+     *
+     * @param before a board known to the forward side
+     * @param move   the move from {@code before} to {@code after}
+     * @param after  a board known to the backward side
+     */
+    private static Tiles.Direction[] join(long before, int move, long after, LongIntMap forward, LongIntMap backward,
+                                          NeighborTable table, long mask)
+    {
+        int head = forward.get(before) >>> 3, tail = backward.get(after) >>> 3;
+        Tiles.Direction[] moves = new Tiles.Direction[head + 1 + tail];
+        long board = before;
+        for (int i = head - 1; i >= 0; i--)                 //walk back to the start
+        {
+            int dir = forward.get(board) & 7;
+            moves[i] = DIRECTIONS[dir];
+            board = undo(board, dir, table, mask);
+        }
+        moves[head] = DIRECTIONS[move];
+        board = after;
+        for (int i = head + 1; i < moves.length; i++)       //walk on to the goal
+        {
+            int dir = OPPOSITE[backward.get(board) & 7];
+            moves[i] = DIRECTIONS[dir];
+            board = undo(board, OPPOSITE[dir], table, mask);
+        }
+        return moves;
+    }
+
+    /**
+     * Takes back a move.
+     *
+     * @param board the board after the move
+     * @param dir   ordinal of the move
+     * @return the board before the move
+     */
+    private static long undo(long board, int dir, NeighborTable table, long mask)
+    {
+        int blank = LongTiles.emptyCell(board, mask);
+        return slide(board, table.neighbor(blank, OPPOSITE[dir]), blank);
+    }
+
+    /**
+     * Slides the tile of a cell into the empty cell.
+     */
+    static long slide(long board, int from, int blank)
+    {
+        long value = board >>> (from << 2) & 0xF;
+        return board ^ (value << (from << 2)) ^ (value << (blank << 2));
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Bidirectional BFS solver holding up to " + maxStates + " boards";
+    }
+}
@@ -0,0 +1,32 @@
+package am.aua.npuzzle.solver;
+
+/**
+ * The {@code Heuristic} interface estimates the number of moves left to solve a {@code SearchBoard}.
+ * Estimates must never exceed the real distance, otherwise the solvers are no longer optimal.
+ */
+public interface Heuristic
+{
+    /**
+     * Computes the estimate from scratch.
+     *
+     * @param board the board to estimate
+     * @return a lower bound of the moves left
+     */
+    int evaluate(SearchBoard board);
+
+    /**
+     * Computes the estimate after a single move, knowing the estimate before it.
+     * The board is already in the state after the move.
+     *
+     * @param board    the board after the move
+     * @param estimate the estimate before the move
+     * @param tile     the tile that moved
+     * @param from     the cell the tile left
+     * @param to       the cell the tile entered
+     * @return a lower bound of the moves left
+     */
+    default int update(SearchBoard board, int estimate, int tile, int from, int to)
+    {
+        return evaluate(board);
+    }
+}
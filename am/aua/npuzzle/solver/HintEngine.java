@@ -0,0 +1,226 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.LongTiles;
+import am.aua.npuzzle.core.Tiles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The {@code HintEngine} class tells the next move of an optimal solution of the board being played,
+ * searching on a background thread while the player thinks.
+ * <p>
+ * The game calls {@link #retarget(Tiles)} whenever the board changes: the search of the previous board,
+ * if still running, is interrupted and a search of the new board starts at once. Every solution found is remembered
+ * together with all the boards along it, each with the rest of the solution, which is optimal for that board too.
+ * So a player following the hints, or taking moves back, gets the next hint without any new search,
+ * and only a move off the known solutions starts a search again.
+ * The search runs on a single daemon thread, which does not keep the program running.
+ * Hints are given for boards of at most 16 cells, the ones a {@code SolutionCache} holds; larger boards
+ * are not searched at all, since their solutions could not be remembered and the search may never end.
+ */
+public class HintEngine implements Closeable
+{
+    /** Number of boards whose solutions are remembered. */
+    private static final int CAPACITY = 1 << 16;
+
+    /** The solver, only used by the background thread. */
+    private final IDAStarSolver solver;
+    /** The solutions found so far, and of the boards along them. */
+    private final SolutionCache known = new SolutionCache(CAPACITY);
+    /** The thread running the searches. */
+    private final Thread worker;
+    /** The board to solve, {@code null} before the first one or if it is too large for hints. */
+    private SearchBoard target;
+    /** Number of calls to {@link #retarget(Tiles)}. */
+    private long generation;
+    /** The generation of the last board taken by the worker. */
+    private long taken;
+    /** Whether the worker is searching. */
+    private boolean busy;
+    /** Whether the engine was closed. */
+    private boolean closed;
+
+    /**
+     * Creates an engine using Manhattan distance plus linear conflict.
+     */
+    public HintEngine()
+    {
+        this(new ManhattanHeuristic());
+    }
+
+    /**
+     * Creates an engine and starts its thread.
+     *
+     * @param heuristic an admissible estimate of the moves left
+     */
+    public HintEngine(Heuristic heuristic)
+    {
+        solver = new IDAStarSolver(heuristic);
+        worker = new Thread(this::run, "hint-engine");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Starts searching a new board in the background, abandoning the search of the previous one.
+     * The board is copied, so it can be played on right away.
+     *
+     * A board too large for hints only stops the search of the previous one.
+     *
+     * @param tiles the board being played
+     */
+    public synchronized void retarget(Tiles tiles)
+    {
+        target = supports(tiles) ? SearchBoard.of(tiles) : null;
+        generation++;
+        if (busy)
+            worker.interrupt();
+        notifyAll();
+    }
+
+    /**
+     * Checks whether hints are given for a board.
+     *
+     * @param tiles the board
+     * @return {@code true} if it has at most {@value LongTiles#MAX_CELLS} cells
+     */
+    public static boolean supports(Tiles tiles)
+    {
+        return tiles.getRows() * tiles.getColumns() <= LongTiles.MAX_CELLS;
+    }
+
+    /**
+     * Gets the next move of an optimal solution of a board, waiting for the search if needed.
+     * The board must have been passed to {@link #retarget(Tiles)} since it last changed.
+     *
+     * @param tiles         the board being played
+     * @param timeoutMillis the longest time to wait for the search
+     * @return the move, or {@code null} if the board is solved, not solvable, too large, or still being searched
+     */
+    public Tiles.Direction hint(Tiles tiles, long timeoutMillis)
+    {
+        if (!supports(tiles))
+            return null;
+        SearchBoard board = SearchBoard.of(tiles);
+        if (board.isGoal())
+            return null;
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        synchronized (this)
+        {
+            while (true)
+            {
+                Solution solution = known.get(board);
+                if (solution != null)
+                    return solution.getMoves()[0];
+                long left = (deadline - System.nanoTime()) / 1_000_000;
+                if (left <= 0 || closed || !busy && taken == generation)    //finished without a solution
+                    return null;
+                try
+                {
+                    wait(left);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * The loop of the background thread: takes the latest board and searches it unless its solution is known.
+     */
+    private void run()
+    {
+        while (true)
+        {
+            SearchBoard board;
+            synchronized (this)
+            {
+                while (!closed && (target == null || taken == generation))
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        //a retarget while idle, checked by the loop
+                    }
+                }
+                if (closed)
+                    return;
+                board = target;
+                taken = generation;
+                busy = known.get(board) == null;
+                Thread.interrupted();                       //an interrupt meant for the previous search
+            }
+            if (!busy)
+                continue;
+            try
+            {
+                Solution solution = solver.solve(board);
+                if (solution != null)
+                    remember(board, solution);
+            }
+            catch (CancellationException e)
+            {
+                //a newer board is waiting
+            }
+            synchronized (this)
+            {
+                busy = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Remembers a solution and, for every board along it, the rest of the solution.
+     *
+     * @param board    the solved board
+     * @param solution its optimal solution
+     */
+    private void remember(SearchBoard board, Solution solution)
+    {
+        Tiles.Direction[] moves = solution.getMoves();
+        SearchBoard along = new SearchBoard(board);
+        try
+        {
+            for (int i = 0; i < moves.length; i++)
+            {
+                known.put(along, new Solution(Arrays.copyOfRange(moves, i, moves.length), 0, 0));
+                along.slide(along.neighbor(moves[i].ordinal()));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);              //not thrown without a file
+        }
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    @Override
+    public synchronized void close()
+    {
+        closed = true;
+        worker.interrupt();
+        notifyAll();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public synchronized String toString()
+    {
+        return "Hint engine " + (busy ? "searching" : "idle") + " with " + known.size() + " board(s) solved";
+    }
+}
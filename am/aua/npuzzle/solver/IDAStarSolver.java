@@ -0,0 +1,205 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.ConfigurationFormatException;
+import am.aua.npuzzle.core.InvalidConfigurationException;
+import am.aua.npuzzle.core.Tiles;
+import am.aua.npuzzle.metrics.SolveEvent;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * The {@code IDAStarSolver} class finds optimal solutions with iterative deepening A*.
+ * The search makes and unmakes moves on a single {@code SearchBoard}, so apart from
+ * the path buffer nothing is allocated while searching.
+ * With the default Manhattan distance plus linear conflict a random 15-puzzle may take seconds;
+ * pass a {@code PatternDatabaseHeuristic} for bulk work on the 15-puzzle.
+ * A search can be abandoned by interrupting its thread: the interrupt is noticed within a few milliseconds
+ * and {@code solve} throws a {@code CancellationException}, leaving the interrupt status set.
+ * An instance must not be used by several threads at the same time.
+ */
+public class IDAStarSolver
+{
+    /** Marks that the search reached the goal. */
+    private static final int FOUND = -1;
+    /** The interrupt status is checked every time the node count has these bits clear. */
+    private static final long CHECK_MASK = (1 << 16) - 1;
+    /** Directions by ordinal. */
+    private static final Tiles.Direction[] DIRECTIONS = Tiles.Direction.values();
+    /** Ordinal of the opposite of every direction. */
+    private static final int[] OPPOSITE = {1, 0, 3, 2};
+
+    /** The estimate of the moves left. */
+    private final Heuristic heuristic;
+    /** The board being searched. */
+    private SearchBoard board;
+    /** Direction ordinals along the current path. */
+    private int[] path;
+    /** Number of boards generated so far. */
+    private long nodes;
+    /** Number of moves of the solution found. */
+    private int length;
+
+    /**
+     * Creates a solver that uses Manhattan distance plus linear conflict.
+     */
+    public IDAStarSolver()
+    {
+        this(new ManhattanHeuristic());
+    }
+
+    /**
+     * Creates a solver with the given heuristic.
+     *
+     * @param heuristic an admissible estimate of the moves left
+     */
+    public IDAStarSolver(Heuristic heuristic)
+    {
+        this.heuristic = heuristic;
+        this.path = new int[64];
+    }
+
+    /**
+     * Finds an optimal solution of a configuration.
+     *
+     * @param config the configuration to solve
+     * @return the solution, or {@code null} if the configuration is not solvable
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public Solution solve(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        return solve(SearchBoard.of(config));
+    }
+
+    /**
+     * Finds an optimal solution of a board. The board itself is not changed.
+     *
+     * @param tiles the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    public Solution solve(Tiles tiles)
+    {
+        return solve(SearchBoard.of(tiles));
+    }
+
+    /**
+     * Finds an optimal solution of a search board. The board is left as it was.
+     *
+     * @param start the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     * @throws CancellationException if the thread was interrupted during the search
+     */
+    public Solution solve(SearchBoard start)
+    {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        long begin = System.nanoTime();
+        boolean finished = false;
+        try
+        {
+            Solution solution = iterate(start);
+            finished = true;
+            return Solution.report(event, this, heuristic.getClass().getSimpleName(), solution);
+        }
+        finally
+        {
+            if (!finished)
+                Solution.cancelled(event, this, heuristic.getClass().getSimpleName(), nodes,
+                        System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Runs the iterations of growing bounds until the goal is reached.
+     *
+     * @param start the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    private Solution iterate(SearchBoard start)
+    {
+        long begin = System.nanoTime();
+        nodes = 0;
+        if (!start.isSolvable())
+            return null;
+        board = new SearchBoard(start);
+        int h = heuristic.evaluate(board);
+        int bound = h;
+        while (true)
+        {
+            if (path.length <= bound)
+                path = new int[bound * 2];
+            int t = search(0, bound, h, -1);
+            if (t == FOUND)
+                break;
+            bound = t;
+        }
+        return new Solution(directions(length), nodes, System.nanoTime() - begin);
+    }
+
+    /**
+     * Depth-first search below the current board, cut off at {@code bound}.
+     *
+     * @param g     moves made so far
+     * @param bound the cost limit of this iteration
+     * @param h     the estimate of the current board
+     * @param last  ordinal of the last move, or -1
+     * @return {@code FOUND}, or the smallest cost that exceeded the bound
+     */
+    private int search(int g, int bound, int h, int last)
+    {
+        int f = g + h;
+        if (f > bound)
+            return f;
+        if (h == 0 && board.isGoal())
+        {
+            length = g;
+            return FOUND;
+        }
+        int min = Integer.MAX_VALUE;
+        for (int dir = 0; dir < 4; dir++)
+        {
+            if (last >= 0 && dir == OPPOSITE[last])
+                continue;
+            int from = board.neighbor(dir);
+            if (from < 0)
+                continue;
+            int to = board.getBlank();
+            int tile = board.tileAt(from);
+            board.slide(from);
+            if ((++nodes & CHECK_MASK) == 0 && Thread.currentThread().isInterrupted())
+                throw new CancellationException("Search interrupted after " + nodes + " node(s)");
+            path[g] = dir;
+            int t = search(g + 1, bound, heuristic.update(board, h, tile, from, to), dir);
+            if (t == FOUND)
+                return FOUND;
+            board.slide(to);
+            if (t < min)
+                min = t;
+        }
+        return min;
+    }
+
+    /**
+     * Converts the first moves of the path buffer.
+     *
+     * @param length number of moves
+     * @return the moves as directions
+     */
+    private Tiles.Direction[] directions(int length)
+    {
+        Tiles.Direction[] moves = new Tiles.Direction[length];
+        for (int i = 0; i < length; i++)
+            moves[i] = DIRECTIONS[path[i]];
+        return moves;
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "IDA* solver using " + heuristic.getClass().getSimpleName();
+    }
+}
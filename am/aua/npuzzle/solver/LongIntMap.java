@@ -0,0 +1,135 @@
+package am.aua.npuzzle.solver;
+
+import java.util.Arrays;
+
+/**
+ * The {@code LongIntMap} class maps {@code long} keys to {@code int} values with open addressing and linear probing,
+ * without boxing: 12 bytes per slot, the table being kept at most half full.
+ * The key 0 is reserved to mark empty slots, which never matters for packed boards since their tiles are distinct.
+ */
+final class LongIntMap
+{
+    /** Returned by {@link #get(long)} for missing keys. */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    /** The keys, 0 for an empty slot. */
+    private long[] keys;
+    /** The value of every key. */
+    private int[] values;
+    /** Number of keys. */
+    private int size;
+
+    /**
+     * Creates an empty map.
+     *
+     * @param expected number of keys to make room for
+     */
+    LongIntMap(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(8, 2 * expected - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Getter for the value of a key.
+     *
+     * @param key the key, not 0
+     * @return the value, or {@link #MISSING}
+     */
+    int get(long key)
+    {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask)
+        {
+            long k = keys[i];
+            if (k == key)
+                return values[i];
+            if (k == 0)
+                return MISSING;
+        }
+    }
+
+    /**
+     * Adds a key unless it is already there.
+     *
+     * @param key   the key, not 0
+     * @param value its value
+     * @return {@code true} if the key was added, {@code false} if it was there and its value was kept
+     */
+    boolean putIfAbsent(long key, int value)
+    {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (long k; (k = keys[i]) != 0; i = (i + 1) & mask)
+            if (k == key)
+                return false;
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length >>> 1)
+            grow();
+        return true;
+    }
+
+    /**
+     * Getter for the number of keys.
+     *
+     * @return the size
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes all the keys, keeping the table.
+     */
+    void clear()
+    {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    /**
+     * Doubles the table.
+     */
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new int[oldKeys.length << 1];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            long k = oldKeys[j];
+            if (k == 0)
+                continue;
+            int i = slot(k, mask);
+            while (keys[i] != 0)
+                i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Home slot of a key: the bits of the key are mixed first, since packed boards differ mostly in a few nibbles.
+     */
+    private static int slot(long key, int mask)
+    {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "LongIntMap of " + size + " keys in " + keys.length + " slots";
+    }
+}
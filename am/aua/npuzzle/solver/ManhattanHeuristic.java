@@ -0,0 +1,130 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.NeighborTable;
+import am.aua.npuzzle.core.Tiles;
+
+/**
+ * The {@code ManhattanHeuristic} class sums the Manhattan distances of all tiles and adds
+ * two moves for every tile that has to leave its goal line to let another one pass (linear conflict).
+ * It keeps no state, so one instance can be shared between threads.
+ * <p>
+ * It is the default of every solver because it needs no preparation and works on any board size, but on its own
+ * it does not keep random 15-puzzles under a second: such a board can take anything from a tenth of a second
+ * to tens of seconds. For bulk work on the 15-puzzle use a {@code PatternDatabaseHeuristic},
+ * often an order of magnitude faster.
+ */
+public class ManhattanHeuristic implements Heuristic
+{
+    /**
+     * Computes the estimate from scratch.
+     *
+     * @param board the board to estimate
+     * @return Manhattan distance plus linear conflict
+     */
+    @Override
+    public int evaluate(SearchBoard board)
+    {
+        int h = 0;
+        for (int pos = 0; pos < board.size(); pos++)
+        {
+            int tile = board.tileAt(pos);
+            if (tile != Tiles.EMPTY)
+                h += distance(board, tile, pos);
+        }
+        for (int row = 0; row < board.getHeight(); row++)
+            h += rowConflict(board, row, -1, Tiles.EMPTY);
+        for (int col = 0; col < board.getWidth(); col++)
+            h += columnConflict(board, col, -1, Tiles.EMPTY);
+        return h;
+    }
+
+    /**
+     * Updates the estimate after a move. Only the moved tile's distance and the
+     * two lines it left and entered across the move are recomputed.
+     *
+     * @param board    the board after the move
+     * @param estimate the estimate before the move
+     * @param tile     the tile that moved
+     * @param from     the cell the tile left
+     * @param to       the cell the tile entered
+     * @return Manhattan distance plus linear conflict
+     */
+    @Override
+    public int update(SearchBoard board, int estimate, int tile, int from, int to)
+    {
+        int h = estimate + distance(board, tile, to) - distance(board, tile, from);
+        if (board.rowOf(from) != board.rowOf(to))
+        {
+            int left = board.rowOf(from), entered = board.rowOf(to);
+            h += rowConflict(board, left, -1, Tiles.EMPTY) - rowConflict(board, left, from, tile)
+                    + rowConflict(board, entered, -1, Tiles.EMPTY) - rowConflict(board, entered, to, Tiles.EMPTY);
+        }
+        else
+        {
+            int left = board.colOf(from), entered = board.colOf(to);
+            h += columnConflict(board, left, -1, Tiles.EMPTY) - columnConflict(board, left, from, tile)
+                    + columnConflict(board, entered, -1, Tiles.EMPTY) - columnConflict(board, entered, to, Tiles.EMPTY);
+        }
+        return h;
+    }
+
+    /**
+     * Manhattan distance of a tile from its goal cell.
+     */
+    private static int distance(SearchBoard board, int tile, int pos)
+    {
+        int goal = tile - 1;
+        return Math.abs(board.rowOf(pos) - board.rowOf(goal)) + Math.abs(board.colOf(pos) - board.colOf(goal));
+    }
+
+    /**
+     * Linear conflict of a row, optionally pretending one of its cells holds another tile.
+     *
+     * @param row      the row
+     * @param override the cell to replace, or -1
+     * @param value    the tile to pretend is in that cell
+     * @return twice the number of tiles that must leave the row
+     */
+    private static int rowConflict(SearchBoard board, int row, int override, int value)
+    {
+        int width = board.getWidth();
+        int start = row * width;
+        int count = 0;
+        long tails = 0;
+        for (int pos = start; pos < start + width; pos++)
+        {
+            int tile = pos == override ? value : board.tileAt(pos);
+            if (tile != Tiles.EMPTY && board.rowOf(tile - 1) == row)
+            {
+                count++;
+                tails = NeighborTable.extend(tails, board.colOf(tile - 1));
+            }
+        }
+        return 2 * (count - Long.bitCount(tails));
+    }
+
+    /**
+     * Linear conflict of a column, optionally pretending one of its cells holds another tile.
+     *
+     * @param col      the column
+     * @param override the cell to replace, or -1
+     * @param value    the tile to pretend is in that cell
+     * @return twice the number of tiles that must leave the column
+     */
+    private static int columnConflict(SearchBoard board, int col, int override, int value)
+    {
+        int width = board.getWidth();
+        int count = 0;
+        long tails = 0;
+        for (int pos = col; pos < board.size(); pos += width)
+        {
+            int tile = pos == override ? value : board.tileAt(pos);
+            if (tile != Tiles.EMPTY && board.colOf(tile - 1) == col)
+            {
+                count++;
+                tails = NeighborTable.extend(tails, board.rowOf(tile - 1));
+            }
+        }
+        return 2 * (count - Long.bitCount(tails));
+    }
+}
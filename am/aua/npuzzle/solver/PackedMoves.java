@@ -0,0 +1,73 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Tiles;
+
+/**
+ * The {@code PackedMoves} class encodes solutions in 2 bits per move, four moves per byte:
+ * move {@code i} is the direction ordinal in bits {@code 2 * (i % 4)} and {@code 2 * (i % 4) + 1} of byte {@code i / 4}.
+ * An 80-move solution of the 15-puzzle takes 20 bytes instead of 80 references.
+ */
+public final class PackedMoves
+{
+    /** Directions by ordinal. */
+    private static final Tiles.Direction[] DIRECTIONS = Tiles.Direction.values();
+
+    /**
+     * Not meant to be instantiated.
+     */
+    private PackedMoves()
+    {
+    }
+
+    /**
+     * Number of bytes of a packed solution.
+     *
+     * @param length number of moves
+     * @return the size in bytes
+     */
+    public static int bytes(int length)
+    {
+        return (length + 3) >>> 2;
+    }
+
+    /**
+     * Packs moves.
+     *
+     * @param moves the moves
+     * @return the packed moves, {@link #bytes(int)} long
+     */
+    public static byte[] encode(Tiles.Direction[] moves)
+    {
+        byte[] packed = new byte[bytes(moves.length)];
+        for (int i = 0; i < moves.length; i++)
+            packed[i >>> 2] |= (byte) (moves[i].ordinal() << ((i & 3) << 1));
+        return packed;
+    }
+
+    /**
+     * Unpacks moves.
+     *
+     * @param packed the packed moves
+     * @param length number of moves
+     * @return the moves
+     */
+    public static Tiles.Direction[] decode(byte[] packed, int length)
+    {
+        Tiles.Direction[] moves = new Tiles.Direction[length];
+        for (int i = 0; i < length; i++)
+            moves[i] = DIRECTIONS[get(packed, i)];
+        return moves;
+    }
+
+    /**
+     * Getter for a single move, without unpacking the others.
+     *
+     * @param packed the packed moves
+     * @param i      the position of the move
+     * @return the direction ordinal of the move
+     */
+    public static int get(byte[] packed, int i)
+    {
+        return (packed[i >>> 2] >>> ((i & 3) << 1)) & 3;
+    }
+}
@@ -0,0 +1,352 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.ConfigurationFormatException;
+import am.aua.npuzzle.core.InvalidConfigurationException;
+import am.aua.npuzzle.core.Tiles;
+import am.aua.npuzzle.metrics.SolveEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ParallelIDAStarSolver} class finds optimal solutions of single hard boards with iterative deepening A*
+ * on all the threads of a fork-join pool.
+ * <p>
+ * Every iteration splits the tree below the start board into subtrees: the first few levels are expanded as tasks,
+ * each with its own copy of the board, and each task at the split depth searches its subtree depth-first
+ * on that copy, making and unmaking moves like {@code IDAStarSolver}. There are many more subtrees than threads,
+ * so idle workers steal the ones left when some subtrees turn out much larger than others.
+ * The workers share the next cost bound, the smallest cost that exceeded the current one, through an atomic minimum,
+ * and the solution through an atomic reference: the first worker to reach the goal publishes its path,
+ * and every other worker stops as soon as it sees it. Any solution found in an iteration is optimal, since
+ * no solution is shorter than the bound of the iteration that finds it.
+ * An instance can solve several boards at the same time, but {@link #shutdown()} stops it for good.
+ */
+public class ParallelIDAStarSolver
+{
+    /** Number of subtrees per worker thread to aim for, so that stealing evens out the work. */
+    private static final int SUBTREES_PER_WORKER = 64;
+    /** Marks that the search reached the goal. */
+    private static final int FOUND = -1;
+    /** Directions by ordinal. */
+    private static final Tiles.Direction[] DIRECTIONS = Tiles.Direction.values();
+    /** Ordinal of the opposite of every direction. */
+    private static final int[] OPPOSITE = {1, 0, 3, 2};
+
+    /** The estimate shared by all workers; heuristics keep no state. */
+    private final Heuristic heuristic;
+    /** The pool running the subtrees. */
+    private final ForkJoinPool pool;
+    /** Number of levels expanded as separate tasks. */
+    private final int splitDepth;
+
+    /**
+     * Creates a solver using Manhattan distance plus linear conflict and one worker per available processor.
+     * Random 15-puzzles may take seconds each with this estimate; a pattern database is much faster.
+     */
+    public ParallelIDAStarSolver()
+    {
+        this(new ManhattanHeuristic(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a solver.
+     * The tree is split deep enough for about {@value #SUBTREES_PER_WORKER} subtrees per worker, counting two moves
+     * per board, plus two levels to make up for the subtrees cut off by the bound.
+     *
+     * @param heuristic   an admissible estimate of the moves left
+     * @param parallelism number of worker threads
+     */
+    public ParallelIDAStarSolver(Heuristic heuristic, int parallelism)
+    {
+        this.heuristic = heuristic;
+        this.pool = new ForkJoinPool(parallelism);
+        this.splitDepth = 2 + (32 - Integer.numberOfLeadingZeros(parallelism * SUBTREES_PER_WORKER - 1));
+    }
+
+    /**
+     * Finds an optimal solution of a configuration.
+     *
+     * @param config the configuration to solve
+     * @return the solution, or {@code null} if the configuration is not solvable
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public Solution solve(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        return solve(SearchBoard.of(config));
+    }
+
+    /**
+     * Finds an optimal solution of a board. The board itself is not changed.
+     *
+     * @param tiles the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    public Solution solve(Tiles tiles)
+    {
+        return solve(SearchBoard.of(tiles));
+    }
+
+    /**
+     * Finds an optimal solution of a search board. The board is not changed.
+     *
+     * @param start the board to solve
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    public Solution solve(SearchBoard start)
+    {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        long begin = System.nanoTime();
+        LongAdder nodes = new LongAdder();
+        boolean finished = false;
+        try
+        {
+            Solution solution = iterate(start, nodes);
+            finished = true;
+            return Solution.report(event, this, heuristic.getClass().getSimpleName(), solution);
+        }
+        finally
+        {
+            if (!finished)
+                Solution.cancelled(event, this, heuristic.getClass().getSimpleName(), nodes.sum(),
+                        System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Runs the iterations of growing bounds, each on the whole pool, until the goal is reached.
+     *
+     * @param start the board to solve
+     * @param nodes where the boards generated are counted
+     * @return the solution, or {@code null} if the board is not solvable
+     */
+    private Solution iterate(SearchBoard start, LongAdder nodes)
+    {
+        long begin = System.nanoTime();
+        if (!start.isSolvable())
+            return null;
+        int h = heuristic.evaluate(start);
+        if (h == 0 && start.isGoal())
+            return new Solution(new Tiles.Direction[0], 0, System.nanoTime() - begin);
+        int bound = h;
+        while (true)
+        {
+            Iteration iteration = new Iteration(bound, nodes);
+            pool.invoke(new Subtree(iteration, new SearchBoard(start), new int[0], h, -1));
+            int[] path = iteration.solution.get();
+            if (path != null)
+                return new Solution(directions(path), nodes.sum(), System.nanoTime() - begin);
+            bound = iteration.next.get();
+        }
+    }
+
+    /**
+     * Converts a path of direction ordinals.
+     *
+     * @param path the ordinals
+     * @return the moves as directions
+     */
+    private static Tiles.Direction[] directions(int[] path)
+    {
+        Tiles.Direction[] moves = new Tiles.Direction[path.length];
+        for (int i = 0; i < path.length; i++)
+            moves[i] = DIRECTIONS[path[i]];
+        return moves;
+    }
+
+    /**
+     * The state of one iteration shared by all its tasks.
+     */
+    private static final class Iteration
+    {
+        /** The cost limit of the iteration. */
+        final int bound;
+        /** The smallest cost that exceeded the bound so far, the bound of the next iteration. */
+        final AtomicInteger next = new AtomicInteger(Integer.MAX_VALUE);
+        /** The first path found to the goal, {@code null} until then. */
+        final AtomicReference<int[]> solution = new AtomicReference<>();
+        /** Number of boards generated, over all iterations. */
+        final LongAdder nodes;
+
+        Iteration(int bound, LongAdder nodes)
+        {
+            this.bound = bound;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Lowers the next bound to a cost that exceeded this one.
+         */
+        void exceeded(int cost)
+        {
+            if (cost < next.get())
+                next.accumulateAndGet(cost, Math::min);
+        }
+
+        /**
+         * Publishes a path to the goal unless another worker was first.
+         */
+        void found(int[] path)
+        {
+            solution.compareAndSet(null, path);
+        }
+
+        boolean isSolved()
+        {
+            return solution.get() != null;
+        }
+    }
+
+    /**
+     * The search of the tree below one board, owning its copy of the board.
+     * Above the split depth it forks a task per move, below it searches in place.
+     */
+    private final class Subtree extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Iteration iteration;
+        /** The root of the subtree, moved in place by the depth-first search. */
+        private final SearchBoard board;
+        /** Direction ordinals from the start to the root of the subtree. */
+        private final int[] prefix;
+        /** The estimate of the root. */
+        private final int h;
+        /** Ordinal of the move that reached the root, or -1. */
+        private final int last;
+        /** Direction ordinals along the current path of the depth-first search. */
+        private int[] path;
+        /** Number of boards generated by this task. */
+        private long nodes;
+
+        Subtree(Iteration iteration, SearchBoard board, int[] prefix, int h, int last)
+        {
+            this.iteration = iteration;
+            this.board = board;
+            this.prefix = prefix;
+            this.h = h;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (iteration.isSolved())
+                return;
+            if (prefix.length < splitDepth)
+                split();
+            else
+            {
+                path = Arrays.copyOf(prefix, iteration.bound + 1);
+                int t = search(prefix.length, h, last);
+                if (t != FOUND && t != Integer.MAX_VALUE)
+                    iteration.exceeded(t);
+            }
+            iteration.nodes.add(nodes);
+        }
+
+        /**
+         * Makes every move from the root on a copy of the board and searches below the children in parallel.
+         */
+        private void split()
+        {
+            int g = prefix.length;
+            List<Subtree> children = new ArrayList<>(4);
+            for (int dir = 0; dir < 4; dir++)
+            {
+                if (last >= 0 && dir == OPPOSITE[last])
+                    continue;
+                int from = board.neighbor(dir);
+                if (from < 0)
+                    continue;
+                int to = board.getBlank();
+                int tile = board.tileAt(from);
+                SearchBoard child = new SearchBoard(board);
+                child.slide(from);
+                nodes++;
+                int ch = heuristic.update(child, h, tile, from, to);
+                int[] moves = Arrays.copyOf(prefix, g + 1);
+                moves[g] = dir;
+                if (g + 1 + ch > iteration.bound)
+                    iteration.exceeded(g + 1 + ch);
+                else if (ch == 0 && child.isGoal())
+                {
+                    iteration.found(moves);
+                    return;
+                }
+                else
+                    children.add(new Subtree(iteration, child, moves, ch, dir));
+            }
+            invokeAll(children);
+        }
+
+        /**
+         * Depth-first search below the current board, cut off at the bound of the iteration.
+         *
+         * @param g    moves made so far from the start
+         * @param h    the estimate of the current board
+         * @param last ordinal of the last move, or -1
+         * @return {@code FOUND}, or the smallest cost that exceeded the bound
+         */
+        private int search(int g, int h, int last)
+        {
+            int f = g + h;
+            if (f > iteration.bound)
+                return f;
+            if (h == 0 && board.isGoal())
+            {
+                iteration.found(Arrays.copyOf(path, g));
+                return FOUND;
+            }
+            if (iteration.isSolved())                       //another worker got there first
+                return FOUND;
+            int min = Integer.MAX_VALUE;
+            for (int dir = 0; dir < 4; dir++)
+            {
+                if (last >= 0 && dir == OPPOSITE[last])
+                    continue;
+                int from = board.neighbor(dir);
+                if (from < 0)
+                    continue;
+                int to = board.getBlank();
+                int tile = board.tileAt(from);
+                board.slide(from);
+                nodes++;
+                path[g] = dir;
+                int t = search(g + 1, heuristic.update(board, h, tile, from, to), dir);
+                board.slide(to);
+                if (t == FOUND)
+                    return FOUND;
+                if (t < min)
+                    min = t;
+            }
+            return min;
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Parallel IDA* solver on " + pool.getParallelism() + " thread(s) using " + heuristic.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,285 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.NeighborTable;
+import am.aua.npuzzle.core.PermutationRank;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The {@code PatternDatabase} class keeps, for every placement of a group of tiles (a pattern),
+ * the number of moves of those tiles needed to bring them home. Moves of the other tiles are free,
+ * so the values of disjoint patterns can be added together.
+ * <p>
+ * A placement is indexed densely by the rank of the sequence of the cells of the pattern tiles
+ * (see {@code PermutationRank}), so the table has one entry per possible placement and none unused.
+ * The table is built once by a breadth-first search backwards from the solved board.
+ */
+public class PatternDatabase
+{
+    /** Marks placements that have not been reached yet while building. */
+    private static final int UNSEEN = 0xFF;
+    /** Largest number of tiles of a pattern, one byte each in a packed placement. */
+    public static final int MAX_TILES = 8;
+
+    /** Number of columns. */
+    private final int width;
+    /** Number of rows. */
+    private final int height;
+    /** The tiles of the pattern. */
+    private final int[] tiles;
+    /** Moves of the pattern tiles needed for every placement. */
+    private final ByteBuffer table;
+
+    /**
+     * Creates a pattern database from an already computed table.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @param tiles  the tiles of the pattern
+     * @param table  the moves for every placement, see {@link #tableSize(int, int)}
+     */
+    public PatternDatabase(int width, int height, int[] tiles, ByteBuffer table)
+    {
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles.clone();
+        if (table.capacity() != tableSize(width * height, tiles.length))
+            throw new IllegalArgumentException("Pattern table has " + table.capacity() + " entries, expected "
+                    + tableSize(width * height, tiles.length));
+        this.table = table;
+    }
+
+    /**
+     * Number of entries of the table of a pattern: the number of placements of its tiles.
+     *
+     * @param cells number of cells of the board
+     * @param size  number of tiles in the pattern
+     * @return the table size
+     */
+    public static int tableSize(int cells, int size)
+    {
+        if (size > MAX_TILES || cells > PermutationRank.MAX_VALUES)
+            throw new IllegalArgumentException("Pattern of " + size + " tiles is too big for a board of " + cells + " cells");
+        long entries = PermutationRank.count(cells, size);
+        if (entries > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Pattern of " + size + " tiles is too big for a board of " + cells + " cells");
+        return (int) entries;
+    }
+
+    /**
+     * Index of a placement.
+     *
+     * @param placement the cell of every pattern tile in pattern order, one byte each
+     * @return the index into the table
+     */
+    public int indexOf(long placement)
+    {
+        return (int) PermutationRank.rankPacked(placement, tiles.length, width * height);
+    }
+
+    /**
+     * Builds the table of a pattern by a breadth-first search backwards from the solved board.
+     * The search walks over (placement, empty cell) states: moving the empty tile over a free cell
+     * costs nothing, swapping it with a pattern tile costs one move.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @param tiles  the tiles of the pattern
+     * @return the pattern database
+     */
+    public static PatternDatabase build(int width, int height, int[] tiles)
+    {
+        int cells = width * height;
+        int k = tiles.length;
+        int size = tableSize(cells, k);
+        if ((long) size * cells > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Pattern of " + k + " tiles is too big to build on a board of " + cells + " cells");
+        NeighborTable neighbors = NeighborTable.of(height, width);
+
+        byte[] table = new byte[size];
+        Arrays.fill(table, (byte) UNSEEN);
+        long[] visited = new long[(int) (((long) size * cells + 63) >>> 6)];
+        long[] queued = new long[visited.length];
+
+        long goal = 0;
+        for (int i = 0; i < k; i++)
+            goal |= (long) (tiles[i] - 1) << (i << 3);
+
+        IntList level = new IntList();
+        IntList next = new IntList();
+        int decoded = -1;                           //free moves queue runs of states with the same placement
+        long placement = 0;
+        level.add((int) PermutationRank.rankPacked(goal, k, cells) * cells + cells - 1);
+        for (int moves = 0; level.size() > 0; moves++)
+        {
+            for (int q = 0; q < level.size(); q++)
+            {
+                int state = level.get(q);
+                if (isSet(visited, state))
+                    continue;
+                set(visited, state);
+                int index = state / cells;
+                int blank = state % cells;
+                if ((table[index] & 0xFF) == UNSEEN)
+                    table[index] = (byte) moves;
+
+                if (index != decoded)
+                {
+                    placement = PermutationRank.unrankPacked(index, k, cells);
+                    decoded = index;
+                }
+                for (int dir = 0; dir < 4; dir++)
+                {
+                    int cell = neighbors.neighbor(blank, dir);
+                    if (cell < 0)
+                        continue;
+
+                    int slot = -1;
+                    for (int i = 0; i < k; i++)
+                        if ((int) (placement >>> (i << 3) & 0xFF) == cell)
+                            slot = i;
+                    if (slot < 0)
+                    {
+                        int moved = index * cells + cell;           //free move, same level
+                        if (!isSet(visited, moved))
+                            level.add(moved);
+                    }
+                    else
+                    {
+                        int shift = slot << 3;
+                        long after = (placement & ~(0xFFL << shift)) | ((long) blank << shift);
+                        int pushed = (int) PermutationRank.rankPacked(after, k, cells) * cells + cell;
+                        if (!isSet(visited, pushed) && !isSet(queued, pushed))
+                        {
+                            set(queued, pushed);
+                            next.add(pushed);
+                        }
+                    }
+                }
+            }
+            for (int q = 0; q < next.size(); q++)
+                clear(queued, next.get(q));
+            IntList swap = level;
+            level = next;
+            next = swap;
+            next.clear();
+        }
+        return new PatternDatabase(width, height, tiles, ByteBuffer.wrap(table));
+    }
+
+    /**
+     * Getter for the number of columns.
+     *
+     * @return width
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Getter for the number of rows.
+     *
+     * @return height
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Getter for the tiles of the pattern.
+     *
+     * @return a copy of the tiles
+     */
+    public int[] getTiles()
+    {
+        return tiles.clone();
+    }
+
+    /**
+     * Getter for the table, positioned at its start.
+     *
+     * @return a read-only view of the table
+     */
+    public ByteBuffer getTable()
+    {
+        return table.asReadOnlyBuffer();
+    }
+
+    /**
+     * Moves of the pattern tiles needed for a placement.
+     *
+     * @param index the placement, see {@link #indexOf(long)}
+     * @return the number of moves
+     */
+    public int get(int index)
+    {
+        return table.get(index) & 0xFF;
+    }
+
+    /** Checks a bit of a bit set. */
+    private static boolean isSet(long[] set, int i)
+    {
+        return (set[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /** Sets a bit of a bit set. */
+    private static void set(long[] set, int i)
+    {
+        set[i >>> 6] |= 1L << i;
+    }
+
+    /** Clears a bit of a bit set. */
+    private static void clear(long[] set, int i)
+    {
+        set[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Pattern database of tiles " + Arrays.toString(tiles) + " on a " + height + "x" + width + " board";
+    }
+
+    /**
+     * A growable list of primitive ints.
+     */
+    private static final class IntList
+    {
+        /** The elements. */
+        private int[] data = new int[1024];
+        /** Number of elements. */
+        private int size;
+
+        /** Appends an element. */
+        void add(int value)
+        {
+            if (size == data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = value;
+        }
+
+        /** Getter for an element. */
+        int get(int i)
+        {
+            return data[i];
+        }
+
+        /** Getter for the number of elements. */
+        int size()
+        {
+            return size;
+        }
+
+        /** Removes all elements. */
+        void clear()
+        {
+            size = 0;
+        }
+    }
+}
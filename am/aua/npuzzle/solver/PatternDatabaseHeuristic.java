@@ -0,0 +1,252 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Tiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code PatternDatabaseHeuristic} class adds up the values of disjoint pattern databases.
+ * Every tile belongs to at most one pattern, so the sum never overestimates.
+ * <p>
+ * The databases are saved to a binary file: the magic number {@code NPDB}, a version, the board
+ * dimensions and the number of patterns, then for every pattern its size, its tiles and its table.
+ * Loading maps the tables straight from the file instead of reading them into the heap.
+ * The heuristic keeps no state, so one instance can be shared between threads.
+ */
+public class PatternDatabaseHeuristic implements Heuristic
+{
+    /** First four bytes of a pattern database file. */
+    private static final int MAGIC = 0x4E504442;        //"NPDB"
+    /** Version of the file layout. */
+    private static final int VERSION = 2;
+
+    /** The disjoint patterns. */
+    private final PatternDatabase[] databases;
+    /** Pattern of every tile, or -1. */
+    private final int[] patternOf;
+    /** Place of every tile inside its pattern. */
+    private final int[] slotOf;
+
+    /**
+     * Creates a heuristic from disjoint pattern databases of the same board.
+     *
+     * @param databases the pattern databases
+     * @throws IllegalArgumentException if the patterns overlap or belong to different boards
+     */
+    public PatternDatabaseHeuristic(PatternDatabase... databases)
+    {
+        if (databases.length == 0)
+            throw new IllegalArgumentException("At least one pattern database is needed");
+        this.databases = databases.clone();
+        int width = databases[0].getWidth(), height = databases[0].getHeight();
+        patternOf = new int[width * height];
+        slotOf = new int[width * height];
+        Arrays.fill(patternOf, -1);
+        for (int p = 0; p < databases.length; p++)
+        {
+            if (databases[p].getWidth() != width || databases[p].getHeight() != height)
+                throw new IllegalArgumentException("Pattern databases of different boards");
+            int[] tiles = databases[p].getTiles();
+            for (int s = 0; s < tiles.length; s++)
+            {
+                if (patternOf[tiles[s]] >= 0)
+                    throw new IllegalArgumentException("Tile " + tiles[s] + " is in more than one pattern");
+                patternOf[tiles[s]] = p;
+                slotOf[tiles[s]] = s;
+            }
+        }
+    }
+
+    /**
+     * Builds the databases of the given partition of tiles.
+     *
+     * @param width    number of columns
+     * @param height   number of rows
+     * @param patterns the disjoint groups of tiles
+     * @return the heuristic
+     */
+    public static PatternDatabaseHeuristic build(int width, int height, int[]... patterns)
+    {
+        PatternDatabase[] databases = new PatternDatabase[patterns.length];
+        for (int p = 0; p < patterns.length; p++)
+            databases[p] = PatternDatabase.build(width, height, patterns[p]);
+        return new PatternDatabaseHeuristic(databases);
+    }
+
+    /**
+     * Builds the usual 6-6-3 partition of the 15-puzzle.
+     *
+     * @return the heuristic
+     */
+    public static PatternDatabaseHeuristic build663()
+    {
+        return build(Tiles.SIZE, Tiles.SIZE,
+                new int[] {1, 5, 6, 9, 10, 13},
+                new int[] {7, 8, 11, 12, 14, 15},
+                new int[] {2, 3, 4});
+    }
+
+    /**
+     * Computes the estimate from scratch.
+     *
+     * @param board the board to estimate
+     * @return the sum of the pattern values
+     */
+    @Override
+    public int evaluate(SearchBoard board)
+    {
+        int h = 0;
+        for (int p = 0; p < databases.length; p++)
+            h += databases[p].get(databases[p].indexOf(placement(board, p)));
+        return h;
+    }
+
+    /**
+     * Updates the estimate after a move. Only the pattern of the moved tile is looked up again.
+     *
+     * @param board    the board after the move
+     * @param estimate the estimate before the move
+     * @param tile     the tile that moved
+     * @param from     the cell the tile left
+     * @param to       the cell the tile entered
+     * @return the sum of the pattern values
+     */
+    @Override
+    public int update(SearchBoard board, int estimate, int tile, int from, int to)
+    {
+        int p = patternOf[tile];
+        if (p < 0)
+            return estimate;
+        int shift = slotOf[tile] << 3;
+        long after = placement(board, p);
+        long before = after ^ ((long) (from ^ to) << shift);
+        return estimate - databases[p].get(databases[p].indexOf(before)) + databases[p].get(databases[p].indexOf(after));
+    }
+
+    /**
+     * Placement of a pattern on a board.
+     *
+     * @param board the board
+     * @param p     the pattern
+     * @return the cell of every tile of the pattern in its order, one byte each
+     */
+    private long placement(SearchBoard board, int p)
+    {
+        long placement = 0;
+        for (int pos = 0; pos < board.size(); pos++)
+        {
+            int tile = board.tileAt(pos);
+            if (tile != Tiles.EMPTY && patternOf[tile] == p)
+                placement |= (long) pos << (slotOf[tile] << 3);
+        }
+        return placement;
+    }
+
+    /**
+     * Saves the databases to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer header = ByteBuffer.allocate(20);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(databases[0].getWidth()).putInt(databases[0].getHeight()).putInt(databases.length);
+            writeFully(channel, header.flip());
+            for (PatternDatabase database : databases)
+            {
+                int[] tiles = database.getTiles();
+                ByteBuffer pattern = ByteBuffer.allocate(4 + 4 * tiles.length);
+                pattern.putInt(tiles.length);
+                for (int tile : tiles)
+                    pattern.putInt(tile);
+                writeFully(channel, pattern.flip());
+                writeFully(channel, database.getTable());
+            }
+        }
+    }
+
+    /**
+     * Loads databases saved by {@link #save(Path)}. The tables are memory-mapped, not copied.
+     *
+     * @param file the file to read
+     * @return the heuristic
+     * @throws IOException if the file cannot be read or is not a pattern database file
+     */
+    public static PatternDatabaseHeuristic load(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 20);
+            if (header.getInt() != MAGIC)
+                throw new IOException(file + " is not a pattern database file");
+            if (header.getInt() != VERSION)
+                throw new IOException(file + " has an unsupported pattern database version");
+            int width = header.getInt(), height = header.getInt();
+            PatternDatabase[] databases = new PatternDatabase[header.getInt()];
+            long offset = 20;
+            for (int p = 0; p < databases.length; p++)
+            {
+                int size = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4).getInt();
+                MappedByteBuffer pattern = channel.map(FileChannel.MapMode.READ_ONLY, offset + 4, 4L * size);
+                int[] tiles = new int[size];
+                for (int s = 0; s < size; s++)
+                    tiles[s] = pattern.getInt();
+                offset += 4 + 4L * size;
+                int entries = PatternDatabase.tableSize(width * height, size);
+                if (offset + entries > channel.size())
+                    throw new IOException(file + " is truncated");
+                databases[p] = new PatternDatabase(width, height, tiles,
+                        channel.map(FileChannel.MapMode.READ_ONLY, offset, entries));
+                offset += entries;
+            }
+            return new PatternDatabaseHeuristic(databases);
+        }
+    }
+
+    /**
+     * Writes a whole buffer to a channel.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Additive heuristic of " + Arrays.toString(databases);
+    }
+
+    /**Builds the 6-6-3 pattern databases of the 15-puzzle and saves them.
+     *
+     * @param args command-line arguments that expect one argument: the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.out.println("Usage: java am.aua.npuzzle.solver.PatternDatabaseHeuristic <output file>");
+            return;
+        }
+        long begin = System.nanoTime();
+        build663().save(Paths.get(args[0]));
+        System.out.println("Pattern databases built in " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,279 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.ConfigurationFormatException;
+import am.aua.npuzzle.core.InvalidConfigurationException;
+import am.aua.npuzzle.core.NeighborTable;
+import am.aua.npuzzle.core.Tiles;
+
+/**
+ * The {@code SearchBoard} class is the mutable board used inside the solvers.
+ * Moves are made and unmade in place, so searching does not allocate.
+ * The goal is the board recognised by {@code Tiles.isSolved()}: tile {@code i + 1}
+ * in the cell {@code i} and the empty tile in the last cell.
+ */
+public final class SearchBoard
+{
+    /** Number of columns. */
+    private final int width;
+    /** Number of rows. */
+    private final int height;
+    /** The cells in row-major order. */
+    private final byte[] cells;
+    /** Row of every cell. */
+    private final int[] rowOf;
+    /** Column of every cell. */
+    private final int[] colOf;
+    /** The moves possible from every cell. */
+    private final NeighborTable neighbors;
+    /** The position of the empty tile. */
+    private int blank;
+
+    /**
+     * Creates a board with the given dimensions and cells.
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     * @param cells  the cells in row-major order, copied
+     */
+    public SearchBoard(int width, int height, byte[] cells)
+    {
+        if (cells.length != width * height)
+            throw new IllegalArgumentException("Expected " + width * height + " cells, found " + cells.length);
+        this.width = width;
+        this.height = height;
+        this.cells = cells.clone();
+        this.rowOf = new int[cells.length];
+        this.colOf = new int[cells.length];
+        this.neighbors = NeighborTable.of(height, width);
+        for (int i = 0; i < cells.length; i++)
+        {
+            rowOf[i] = i / width;
+            colOf[i] = i % width;
+            if (cells[i] == Tiles.EMPTY)
+                blank = i;
+        }
+    }
+
+    /**
+     * Creates a copy of an existing {@code SearchBoard}.
+     *
+     * @param that The board to copy.
+     */
+    public SearchBoard(SearchBoard that)
+    {
+        this.width = that.width;
+        this.height = that.height;
+        this.cells = that.cells.clone();
+        this.rowOf = that.rowOf;
+        this.colOf = that.colOf;
+        this.neighbors = that.neighbors;
+        this.blank = that.blank;
+    }
+
+    /**
+     * Reads the cells of a {@code Tiles} board.
+     *
+     * @param tiles the board to read
+     * @return a new search board with the same cells
+     */
+    public static SearchBoard of(Tiles tiles)
+    {
+        int rows = tiles.getRows(), cols = tiles.getColumns();
+        byte[] cells = new byte[rows * cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                cells[i * cols + j] = tiles.getTile(i, j);
+        return new SearchBoard(cols, rows, cells);
+    }
+
+    /**
+     * Reads the cells of a configuration of any size, reporting malformed or invalid data
+     * instead of quitting like the {@code Tiles} constructors do.
+     *
+     * @param config the configuration to read
+     * @return a new search board with the cells of the configuration
+     * @throws ConfigurationFormatException  if the data is malformed
+     * @throws InvalidConfigurationException if the tiles are not a valid board
+     */
+    public static SearchBoard of(Configuration config) throws ConfigurationFormatException, InvalidConfigurationException
+    {
+        return new SearchBoard(config.getColumns(), config.getRows(), config.getCells());
+    }
+
+    /**
+     * Getter for the number of columns.
+     *
+     * @return width
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Getter for the number of rows.
+     *
+     * @return height
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Getter for the number of cells.
+     *
+     * @return width * height
+     */
+    public int size()
+    {
+        return cells.length;
+    }
+
+    /**
+     * Getter for the tile in a cell.
+     *
+     * @param pos the cell
+     * @return the tile value
+     */
+    public int tileAt(int pos)
+    {
+        return cells[pos];
+    }
+
+    /**
+     * Getter for the position of the empty tile.
+     *
+     * @return the empty cell
+     */
+    public int getBlank()
+    {
+        return blank;
+    }
+
+    /**
+     * Getter for the row of a cell.
+     *
+     * @param pos the cell
+     * @return its row
+     */
+    public int rowOf(int pos)
+    {
+        return rowOf[pos];
+    }
+
+    /**
+     * Getter for the column of a cell.
+     *
+     * @param pos the cell
+     * @return its column
+     */
+    public int colOf(int pos)
+    {
+        return colOf[pos];
+    }
+
+    /**
+     * Finds the tile that would move in the given direction.
+     *
+     * @param direction ordinal of a {@code Tiles.Direction}
+     * @return the cell of that tile, or -1 if the move leaves the board
+     */
+    public int neighbor(int direction)
+    {
+        return neighbors.neighbor(blank, direction);
+    }
+
+    /**
+     * Getter for the moves that are possible on the current board.
+     *
+     * @return bit {@code d} set if the direction of ordinal {@code d} is legal
+     */
+    public int legalMoves()
+    {
+        return neighbors.legalMoves(blank);
+    }
+
+    /**
+     * Slides the tile in the given cell into the empty cell.
+     * Sliding the tile back from the old empty cell undoes the move.
+     *
+     * @param pos the cell of a tile next to the empty one
+     */
+    public void slide(int pos)
+    {
+        cells[blank] = cells[pos];
+        cells[pos] = Tiles.EMPTY;
+        blank = pos;
+    }
+
+    /**
+     * Checks if the board is the goal board.
+     *
+     * @return {@code true} if every tile is in place
+     */
+    public boolean isGoal()
+    {
+        if (blank + 1 != cells.length)
+            return false;
+        for (int i = 0; i + 1 < cells.length; i++)
+            if (cells[i] != i + 1)
+                return false;
+        return true;
+    }
+
+    /**
+     * Checks if the board can reach the goal, using the parity of the permutation
+     * against the distance of the empty tile from its goal cell.
+     *
+     * @return {@code true} if the board is solvable
+     */
+    public boolean isSolvable()
+    {
+        boolean[] seen = new boolean[cells.length];
+        int parity = 0;
+        for (int i = 0; i < cells.length; i++)
+        {
+            if (seen[i])
+                continue;
+            int length = 0;
+            for (int j = i; !seen[j]; j = goalOf(cells[j]))
+            {
+                seen[j] = true;
+                length++;
+            }
+            parity ^= (length - 1) & 1;
+        }
+        int last = cells.length - 1;
+        int distance = Math.abs(rowOf[blank] - rowOf[last]) + Math.abs(colOf[blank] - colOf[last]);
+        return parity == (distance & 1);
+    }
+
+    /**
+     * Getter for the goal cell of a tile.
+     *
+     * @param tile the tile value
+     * @return the cell of the tile on the solved board
+     */
+    public int goalOf(int tile)
+    {
+        return tile == Tiles.EMPTY ? cells.length - 1 : tile - 1;
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cells.length; i++)
+        {
+            if (i > 0)
+                sb.append(colOf[i] == 0 ? " : " : " ");
+            sb.append(cells[i]);
+        }
+        return sb.toString();
+    }
+}
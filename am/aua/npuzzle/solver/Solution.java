@@ -0,0 +1,173 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Tiles;
+import am.aua.npuzzle.metrics.Metrics;
+import am.aua.npuzzle.metrics.SolveEvent;
+
+import java.util.Arrays;
+
+/**
+ * The {@code Solution} class keeps the moves found by a solver together with the cost of finding them.
+ * This class is immutable.
+ */
+public class Solution
+{
+    /** The moves leading to the solved board. */
+    private final Tiles.Direction[] moves;
+    /** Number of boards generated by the search. */
+    private final long nodesExpanded;
+    /** Wall-clock time of the search in nanoseconds. */
+    private final long timeNanos;
+
+    /**
+     * Constructor to initialize the data
+     *
+     * @param moves         the moves leading to the solved board, copied
+     * @param nodesExpanded number of boards generated by the search
+     * @param timeNanos     wall-clock time of the search in nanoseconds
+     */
+    public Solution(Tiles.Direction[] moves, long nodesExpanded, long timeNanos)
+    {
+        this.moves = moves.clone();
+        this.nodesExpanded = nodesExpanded;
+        this.timeNanos = timeNanos;
+    }
+
+    /**
+     * Getter for the moves.
+     *
+     * @return a copy of the moves, in the order they have to be made
+     */
+    public Tiles.Direction[] getMoves()
+    {
+        return moves.clone();
+    }
+
+    /**
+     * Getter for the number of moves.
+     *
+     * @return the solution length
+     */
+    public int getLength()
+    {
+        return moves.length;
+    }
+
+    /**
+     * Getter for the number of boards generated by the search.
+     *
+     * @return nodes expanded
+     */
+    public long getNodesExpanded()
+    {
+        return nodesExpanded;
+    }
+
+    /**
+     * Getter for the search time.
+     *
+     * @return time in nanoseconds
+     */
+    public long getTimeNanos()
+    {
+        return timeNanos;
+    }
+
+    /**
+     * Reports the end of a search to Flight Recorder and, if it found a solution, to {@code Metrics}.
+     *
+     * @param event     the event begun before the search
+     * @param solver    the solver
+     * @param heuristic the name of the heuristic, or of the search if it has none
+     * @param solution  the solution, or {@code null} if the board is not solvable
+     * @return the solution
+     */
+    static Solution report(SolveEvent event, Object solver, String heuristic, Solution solution)
+    {
+        if (solution != null)
+        {
+            Metrics.search(heuristic, solution.nodesExpanded, solution.timeNanos);
+            commit(event, solver, heuristic, solution.moves.length, solution.nodesExpanded, false);
+        }
+        else
+            commit(event, solver, heuristic, -1, 0, false);
+        return solution;
+    }
+
+    /**
+     * Reports a search that did not finish, usually because it was cancelled, to Flight Recorder and {@code Metrics},
+     * with the work done until it stopped.
+     *
+     * @param event     the event begun before the search
+     * @param solver    the solver
+     * @param heuristic the name of the heuristic, or of the search if it has none
+     * @param nodes     number of boards generated before the search stopped
+     * @param nanos     time until the search stopped, in nanoseconds
+     */
+    static void cancelled(SolveEvent event, Object solver, String heuristic, long nodes, long nanos)
+    {
+        Metrics.search(heuristic, nodes, nanos);
+        commit(event, solver, heuristic, -1, nodes, true);
+    }
+
+    /**
+     * Commits the event of a search if Flight Recorder records it.
+     *
+     * @param event     the event begun before the search
+     * @param solver    the solver
+     * @param heuristic the name of the heuristic, or of the search if it has none
+     * @param length    number of moves of the solution, or -1 if there is none
+     * @param nodes     number of boards generated
+     * @param cancelled whether the search stopped before it finished
+     */
+    private static void commit(SolveEvent event, Object solver, String heuristic, int length, long nodes,
+                               boolean cancelled)
+    {
+        if (event.shouldCommit())
+        {
+            event.solver = solver.getClass().getSimpleName();
+            event.heuristic = heuristic;
+            event.length = length;
+            event.nodes = nodes;
+            event.cancelled = cancelled;
+            event.commit();
+        }
+    }
+
+    /**Checks for equality
+     * @param other the class to check for equality
+     * @return true if both are equal, otherwise false
+     * */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other == null)
+            return false;
+        else if (getClass() != other.getClass())
+            return false;
+        else
+        {
+            Solution s = (Solution) other;
+            return Arrays.equals(moves, s.moves);
+        }
+    }
+
+    /**
+     * @return hash code of the moves
+     * */
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(moves);
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Solution of " + moves.length + " move(s) " + Arrays.toString(moves)
+                + " after " + nodesExpanded + " node(s) in " + timeNanos / 1_000_000 + " ms";
+    }
+}
@@ -0,0 +1,416 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.LongTiles;
+import am.aua.npuzzle.core.Tiles;
+import am.aua.npuzzle.core.Zobrist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code SolutionCache} class remembers the solutions of boards, so a board submitted again is answered
+ * without searching. Boards are keyed by their dimensions and their tiles packed into a {@code long} like
+ * {@code LongTiles}, so only boards of at most 16 cells are cached; larger ones are never found.
+ * <p>
+ * Recently used solutions are kept in memory, the least recently used being dropped past a number of entries.
+ * With a file, every solution is also appended to it and found there again after it was dropped from memory,
+ * or by a later run: the file is read once when the cache is opened, keeping only the position of every record,
+ * and a record cut short by a crash is discarded. Solutions returned from the cache report no nodes
+ * and the time of the lookup. The counters tell how many lookups were answered from memory, from the file,
+ * or not at all, and how many solutions were dropped from memory.
+ * All the methods are synchronized, so one cache can be shared by the workers of a {@code BatchSolver}.
+ */
+public class SolutionCache implements Closeable
+{
+    /** The first bytes of a cache file. */
+    private static final int MAGIC = 0x4E505343;        //"NPSC"
+    /** The layout of the records. */
+    private static final int VERSION = 1;
+    /** Size of the file header. */
+    private static final int HEADER = 8;
+    /** Size of a record without its moves: rows, columns, tiles and number of moves. */
+    private static final int RECORD = 12;
+    /** Directions by ordinal. */
+    private static final Tiles.Direction[] DIRECTIONS = Tiles.Direction.values();
+
+    /** Largest number of solutions kept in memory. */
+    private final int capacity;
+    /** The solutions in memory as direction ordinals, least recently used first. */
+    private final LinkedHashMap<Key, byte[]> memory;
+    /** The file of the disk tier, or {@code null}. */
+    private final FileChannel file;
+    /** The position of the record of every board in the file. */
+    private final Map<Key, Long> index = new HashMap<>();
+    /** Lookups answered from memory. */
+    private long hits;
+    /** Lookups answered from the file. */
+    private long diskHits;
+    /** Lookups not answered. */
+    private long misses;
+    /** Solutions dropped from memory. */
+    private long evictions;
+
+    /**
+     * Creates a cache kept in memory only.
+     *
+     * @param capacity largest number of solutions kept in memory
+     */
+    public SolutionCache(int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        this.capacity = capacity;
+        this.file = null;
+        this.memory = lru();
+    }
+
+    /**
+     * Opens a cache backed by a file, creating the file if it does not exist.
+     *
+     * @param capacity largest number of solutions kept in memory
+     * @param path     the file of the disk tier
+     * @throws IOException if the file cannot be opened or is not a cache file
+     */
+    public SolutionCache(int capacity, Path path) throws IOException
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        this.capacity = capacity;
+        this.memory = lru();
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            scan(path);
+        }
+        catch (IOException e)
+        {
+            file.close();
+            throw e;
+        }
+    }
+
+    private LinkedHashMap<Key, byte[]> lru()
+    {
+        return new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest)
+            {
+                if (size() <= capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Reads the header and the position of every record, cutting off a record left incomplete.
+     */
+    private void scan(Path path) throws IOException
+    {
+        long size = file.size();
+        if (size == 0)
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION);
+            writeFully(header.flip(), 0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (size < HEADER || readFully(header, 0) < HEADER || header.getInt(0) != MAGIC)
+            throw new IOException(path + " is not a solution cache file");
+        if (header.getInt(4) != VERSION)
+            throw new IOException(path + " has an unsupported solution cache version");
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        long position = HEADER;
+        while (position + RECORD <= size)
+        {
+            record.clear();
+            readFully(record, position);
+            int rows = record.get(0), cols = record.get(1), length = record.getShort(10) & 0xFFFF;
+            if (rows < 1 || cols < 1 || rows * cols > LongTiles.MAX_CELLS || position + RECORD + length > size)
+                break;
+            index.putIfAbsent(new Key(rows, cols, record.getLong(2)), position);
+            position += RECORD + length;
+        }
+        if (position < size)
+            file.truncate(position);
+    }
+
+    /**
+     * Looks for the solution of a board, in memory first and then in the file.
+     *
+     * @param board the board
+     * @return the solution, or {@code null} if the board was never solved or has more than 16 cells
+     */
+    public synchronized Solution get(SearchBoard board)
+    {
+        long begin = System.nanoTime();
+        Key key = Key.of(board);
+        byte[] moves = key == null ? null : memory.get(key);
+        if (moves != null)
+            hits++;
+        else if (key != null && (moves = read(key)) != null)
+        {
+            diskHits++;
+            memory.put(key, moves);
+        }
+        else
+        {
+            misses++;
+            return null;
+        }
+        Tiles.Direction[] directions = new Tiles.Direction[moves.length];
+        for (int i = 0; i < moves.length; i++)
+            directions[i] = DIRECTIONS[moves[i]];
+        return new Solution(directions, 0, System.nanoTime() - begin);
+    }
+
+    /**
+     * Remembers the solution of a board, and appends it to the file unless the file already has it.
+     * Nothing is remembered for boards of more than 16 cells.
+     *
+     * @param board    the board
+     * @param solution its solution
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void put(SearchBoard board, Solution solution) throws IOException
+    {
+        Key key = Key.of(board);
+        if (key == null)
+            return;
+        Tiles.Direction[] directions = solution.getMoves();
+        byte[] moves = new byte[directions.length];
+        for (int i = 0; i < moves.length; i++)
+            moves[i] = (byte) directions[i].ordinal();
+        memory.put(key, moves);
+        if (file != null && !index.containsKey(key))
+        {
+            long position = file.size();
+            ByteBuffer record = ByteBuffer.allocate(RECORD + moves.length);
+            record.put((byte) key.rows).put((byte) key.cols).putLong(key.board).putShort((short) moves.length).put(moves);
+            writeFully(record.flip(), position);
+            index.put(key, position);
+        }
+    }
+
+    /**
+     * Finds the solution of a board in the cache, or with a solver, remembering it.
+     *
+     * @param board  the board
+     * @param solver the solver used on a miss
+     * @return the solution, or {@code null} if the board is not solvable
+     * @throws IOException if the file cannot be written
+     */
+    public Solution solve(SearchBoard board, IDAStarSolver solver) throws IOException
+    {
+        Solution solution = get(board);
+        if (solution == null && (solution = solver.solve(board)) != null)
+            put(board, solution);
+        return solution;
+    }
+
+    /**
+     * Loads into memory the solutions of some configurations found in the file, up to the capacity,
+     * so that solving them later does not touch the disk. Configurations that are not valid are skipped.
+     *
+     * @param configs the configurations about to be solved, for example a loaded {@code ConfigurationStore}
+     * @return the number of solutions loaded
+     */
+    public synchronized int warm(Iterable<Configuration> configs)
+    {
+        int loaded = 0;
+        for (Configuration config : configs)
+        {
+            if (memory.size() >= capacity)
+                break;
+            Key key;
+            try
+            {
+                key = Key.of(SearchBoard.of(config));
+            }
+            catch (Exception e)
+            {
+                continue;
+            }
+            byte[] moves;
+            if (key != null && !memory.containsKey(key) && (moves = read(key)) != null)
+            {
+                memory.put(key, moves);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads the moves of a board from the file.
+     *
+     * @return the direction ordinals, or {@code null} if the file has no record of the board
+     */
+    private byte[] read(Key key)
+    {
+        Long position = index.get(key);
+        if (position == null)
+            return null;
+        try
+        {
+            ByteBuffer length = ByteBuffer.allocate(2);
+            readFully(length, position + RECORD - 2);
+            ByteBuffer moves = ByteBuffer.allocate(length.getShort(0) & 0xFFFF);
+            readFully(moves, position + RECORD);
+            return moves.array();
+        }
+        catch (IOException e)
+        {
+            return null;                                //a file that cannot be read is a miss
+        }
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException
+    {
+        int total = 0;
+        while (buffer.hasRemaining())
+        {
+            int n = file.read(buffer, position + total);
+            if (n < 0)
+                break;
+            total += n;
+        }
+        return total;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            position += file.write(buffer, position);
+    }
+
+    /**
+     * Getter for the lookups answered from memory.
+     *
+     * @return hits
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Getter for the lookups answered from the file.
+     *
+     * @return disk hits
+     */
+    public synchronized long getDiskHits()
+    {
+        return diskHits;
+    }
+
+    /**
+     * Getter for the lookups not answered.
+     *
+     * @return misses
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Getter for the solutions dropped from memory.
+     *
+     * @return evictions
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Getter for the number of solutions in memory.
+     *
+     * @return the size of the memory tier
+     */
+    public synchronized int size()
+    {
+        return memory.size();
+    }
+
+    /**
+     * Closes the file, if any. Everything was written already.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (file != null)
+            file.close();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public synchronized String toString()
+    {
+        return "Solution cache of " + memory.size() + "/" + capacity + " in memory and " + index.size() + " on disk: "
+                + hits + " hit(s), " + diskHits + " disk hit(s), " + misses + " miss(es), " + evictions + " eviction(s)";
+    }
+
+    /**
+     * The canonical key of a board: its dimensions and its tiles packed four bits per cell.
+     */
+    private static final class Key
+    {
+        final int rows;
+        final int cols;
+        final long board;
+
+        Key(int rows, int cols, long board)
+        {
+            this.rows = rows;
+            this.cols = cols;
+            this.board = board;
+        }
+
+        /**
+         * Packs a board.
+         *
+         * @return the key, or {@code null} if the board has more than 16 cells
+         */
+        static Key of(SearchBoard board)
+        {
+            int cells = board.size();
+            if (cells > LongTiles.MAX_CELLS)
+                return null;
+            long packed = 0;
+            for (int i = 0; i < cells; i++)
+                packed |= (long) board.tileAt(i) << (i << 2);
+            return new Key(board.getHeight(), board.getWidth(), packed);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key))
+                return false;
+            Key k = (Key) other;
+            return board == k.board && rows == k.rows && cols == k.cols;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Zobrist.fold(board * 0x9E3779B97F4A7C15L) ^ rows * 31 ^ cols;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.LongTiles;
+import am.aua.npuzzle.core.NeighborTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The {@code SolutionVerifier} class replays every solution of a solution store against its board
+ * and reports the ones that do not end on the solved board.
+ * The blocks of the store are mapped and replayed in parallel; the replay works on the packed board
+ * and reads the moves straight from the mapped file, so it allocates nothing per record or per move.
+ * A solution fails if one of its moves leaves the board or if it ends anywhere but the solved board,
+ * and a board stored without a solution fails if it is solvable after all.
+ *
+ * @see SolutionWriter
+ */
+public class SolutionVerifier
+{
+    /** The failures of a block without any. */
+    private static final long[] NONE = new long[0];
+
+    /** The pool replaying the blocks. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a verifier with one worker per available processor.
+     */
+    public SolutionVerifier()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a verifier.
+     *
+     * @param parallelism number of worker threads
+     */
+    public SolutionVerifier(int parallelism)
+    {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * The {@code Report} class holds the outcome of the verification of a solution store.
+     */
+    public static final class Report
+    {
+        /** Number of records. */
+        private final long count;
+        /** Number of records of boards that were not valid. */
+        private final long invalid;
+        /** The indices of the records that failed, in increasing order. */
+        private final long[] failures;
+        /** Time taken, in nanoseconds. */
+        private final long timeNanos;
+
+        private Report(long count, long invalid, long[] failures, long timeNanos)
+        {
+            this.count = count;
+            this.invalid = invalid;
+            this.failures = failures;
+            this.timeNanos = timeNanos;
+        }
+
+        /**
+         * Getter for the number of records.
+         *
+         * @return the count
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Getter for the number of records of boards that were not valid, which are not replayed.
+         *
+         * @return the count
+         */
+        public long getInvalid()
+        {
+            return invalid;
+        }
+
+        /**
+         * Getter for the records that failed.
+         *
+         * @return their indices in increasing order
+         */
+        public long[] getFailures()
+        {
+            return failures.clone();
+        }
+
+        /**
+         * Getter for the time taken.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getTimeNanos()
+        {
+            return timeNanos;
+        }
+
+        /**
+         * @return the string representation of this class
+         * */
+        @Override
+        public String toString()
+        {
+            long perSecond = timeNanos == 0 ? 0 : count * 1_000_000_000L / timeNanos;
+            return count + " solutions, " + failures.length + " failed, " + invalid + " invalid boards, "
+                    + timeNanos / 1_000_000 + " ms (" + perSecond + " per second)";
+        }
+    }
+
+    /**
+     * Replays every solution of a solution store.
+     *
+     * @param file the solution store
+     * @return the report
+     * @throws IOException if the file cannot be read or is not a solution store
+     */
+    public Report verify(Path file) throws IOException
+    {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() < SolutionWriter.HEADER)
+                throw new IOException(file + " is not a solution store");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SolutionWriter.HEADER)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != SolutionWriter.MAGIC)
+                throw new IOException(file + " is not a solution store");
+            if (header.getShort() != SolutionWriter.VERSION)
+                throw new IOException(file + " has an unsupported solution store version");
+            int rows = header.get();
+            int cols = header.get();
+            int block = header.getInt();
+            header.getInt();
+            long count = header.getLong();
+            long table = header.getLong();
+            int blocks = (int) ((count + block - 1) / block);
+            if (rows * cols > LongTiles.MAX_CELLS || (count > 0 && (rows < 1 || cols < 1))
+                    || block <= 0 || table < SolutionWriter.HEADER || channel.size() < table + 8L * blocks)
+                throw new IOException(file + " is not a complete solution store");
+
+            ByteBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, table, 8L * blocks)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            List<ForkJoinTask<long[]>> tasks = new ArrayList<>(blocks);
+            long[] invalid = new long[blocks];
+            for (int b = 0; b < blocks; b++)
+            {
+                long from = offsets.getLong(8 * b);
+                long to = b + 1 < blocks ? offsets.getLong(8 * (b + 1)) : table;
+                if (from < SolutionWriter.HEADER || to < from || to - from > Integer.MAX_VALUE)
+                    throw new IOException(file + " has a corrupt block table");
+                ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                long first = (long) b * block;
+                int size = (int) Math.min(block, count - first);
+                int index = b;
+                tasks.add(pool.submit(() -> replay(records, first, size, rows, cols, invalid, index)));
+            }
+
+            long[] failures = NONE;
+            int failed = 0;
+            for (ForkJoinTask<long[]> task : tasks)
+            {
+                long[] some = task.join();
+                if (failed + some.length > failures.length)
+                    failures = Arrays.copyOf(failures, Math.max(16, 2 * (failed + some.length)));
+                System.arraycopy(some, 0, failures, failed, some.length);
+                failed += some.length;
+            }
+            return new Report(count, Arrays.stream(invalid).sum(), Arrays.copyOf(failures, failed),
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Replays the records of one block.
+     *
+     * @param records the mapped records
+     * @param first   the index of the first record
+     * @param size    number of records
+     * @param rows    number of rows of the boards
+     * @param cols    number of columns of the boards
+     * @param invalid where the number of records of boards that were not valid is stored
+     * @param block   the index of the block
+     * @return the indices of the records that failed
+     */
+    private static long[] replay(ByteBuffer records, long first, int size, int rows, int cols, long[] invalid, int block)
+    {
+        NeighborTable table = NeighborTable.of(rows, cols);
+        int cells = rows * cols;
+        long mask = LongTiles.mask(cells);
+        long goal = LongTiles.goal(cells);
+        long[] failures = NONE;
+        int failed = 0;
+        int skipped = 0;
+        int position = 0;
+        for (int r = 0; r < size; r++)
+        {
+            long board = records.getLong(position);
+            int length = records.getShort(position + 8) & 0xFFFF;
+            position += 10;
+            boolean ok;
+            if (length == SolutionWriter.NONE)
+            {
+                if (board == 0)
+                    skipped++;
+                ok = board == 0 || !LongTiles.isSolvable(board, rows, cols);
+            }
+            else
+            {
+                ok = replay(board, records, position, length, table, mask) == goal;
+                position += PackedMoves.bytes(length);
+            }
+            if (!ok)
+            {
+                if (failed == failures.length)
+                    failures = Arrays.copyOf(failures, Math.max(16, 2 * failed));
+                failures[failed++] = first + r;
+            }
+        }
+        invalid[block] = skipped;
+        return failed == 0 ? NONE : Arrays.copyOf(failures, failed);
+    }
+
+    /**
+     * Applies packed moves to a packed board.
+     *
+     * @param board    the board
+     * @param moves    the buffer holding the moves
+     * @param position the position of the first byte of the moves
+     * @param length   number of moves
+     * @param table    the moves of the boards of these dimensions
+     * @param mask     the bits of the cells of the board
+     * @return the board after the moves, or -1 if one of them leaves the board
+     */
+    private static long replay(long board, ByteBuffer moves, int position, int length, NeighborTable table, long mask)
+    {
+        int blank = LongTiles.emptyCell(board, mask);
+        int packed = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if ((i & 3) == 0)
+                packed = moves.get(position + (i >>> 2));
+            int from = table.neighbor(blank, packed & 3);
+            if (from < 0)
+                return -1;
+            board = BidirectionalSolver.slide(board, from, blank);
+            blank = from;
+            packed >>>= 2;
+        }
+        return board;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Solution verifier on " + pool.getParallelism() + " thread(s)";
+    }
+
+    /**Verifies a solution store and prints the indices of the solutions that failed.
+     *
+     * @param args command-line arguments: the solution store
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.out.println("Usage: java am.aua.npuzzle.solver.SolutionVerifier <solution store>");
+            return;
+        }
+        SolutionVerifier verifier = new SolutionVerifier();
+        try
+        {
+            Report report = verifier.verify(Paths.get(args[0]));
+            for (long index : report.getFailures())
+                System.out.println(index + " failed");
+            System.out.println(report);
+        }
+        finally
+        {
+            verifier.shutdown();
+        }
+    }
+}
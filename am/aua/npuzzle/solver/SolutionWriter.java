@@ -0,0 +1,207 @@
+package am.aua.npuzzle.solver;
+
+import am.aua.npuzzle.core.BinaryConfigurationWriter;
+import am.aua.npuzzle.core.Configuration;
+import am.aua.npuzzle.core.LongTiles;
+import am.aua.npuzzle.core.Tiles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code SolutionWriter} class writes boards together with their solutions in the compact solution store format.
+ * <p>
+ * The file starts with a 32-byte little-endian header: the magic number {@code NPZS}, a 2-byte version,
+ * one byte each for the number of rows and columns, the 4-byte number of records per block, 4 reserved bytes,
+ * the 8-byte number of records and the 8-byte position of the block table. Every record is the board packed like
+ * in a binary configuration store, the 2-byte number of moves, then the moves packed by {@code PackedMoves};
+ * a board without a solution, because it is not solvable or not valid, has {@link #NONE} moves and no move bytes.
+ * The block table at the end gives the position of every {@value #BLOCK}-th record, so that a reader can split
+ * the records between threads without going through them first.
+ *
+ * @see SolutionVerifier
+ */
+public class SolutionWriter implements Closeable
+{
+    /** First four bytes of a solution store, "NPZS". */
+    static final int MAGIC = 0x535A504E;
+    /** Version of the file layout. */
+    static final short VERSION = 1;
+    /** Size of the header in bytes. */
+    static final int HEADER = 32;
+    /** Number of records per block. */
+    static final int BLOCK = 4096;
+    /** The number of moves of a board without a solution. */
+    public static final int NONE = 0xFFFF;
+
+    /** The file being written. */
+    private final FileChannel channel;
+    /** Records waiting to be written. */
+    private final ByteBuffer buffer;
+    /** Number of rows of the boards, 0 until the first configuration is written. */
+    private int rows;
+    /** Number of columns of the boards, 0 until the first configuration is written. */
+    private int cols;
+    /** The position of the first record of every block. */
+    private long[] blocks = new long[16];
+    /** The position of the next record. */
+    private long position = HEADER;
+    /** Number of records written so far. */
+    private long count;
+
+    /**
+     * Creates a solution store, replacing the file if it exists.
+     * The dimensions of the boards are those of the first configuration written.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be created
+     */
+    public SolutionWriter(Path file) throws IOException
+    {
+        this(file, 0, 0);
+    }
+
+    /**
+     * Creates a solution store of boards with the given dimensions, replacing the file if it exists.
+     *
+     * @param file the file to write
+     * @param rows number of rows of the boards
+     * @param cols number of columns of the boards
+     * @throws IOException if the file cannot be created
+     */
+    public SolutionWriter(Path file, int rows, int cols) throws IOException
+    {
+        if (rows * cols > LongTiles.MAX_CELLS)
+            throw new IllegalArgumentException("A board of " + rows + "x" + cols + " does not fit in 8 bytes");
+        this.rows = rows;
+        this.cols = cols;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER);                        //the header is written on close, when the count is known
+    }
+
+    /**
+     * Appends a packed board and its solution.
+     *
+     * @param board the board with the {@code i}-th number of its text form in the nibble {@code i}
+     * @param moves the moves solving it, or {@code null} if it has no solution
+     * @throws IOException if writing fails
+     */
+    public void write(long board, Tiles.Direction[] moves) throws IOException
+    {
+        if (moves != null && moves.length >= NONE)
+            throw new IllegalArgumentException("A solution of " + moves.length + " moves is too long to store");
+        byte[] packed = moves == null ? new byte[0] : PackedMoves.encode(moves);
+        if (buffer.remaining() < 10 + packed.length)
+            flush();
+        if ((count % BLOCK) == 0)
+        {
+            int block = (int) (count / BLOCK);
+            if (block == blocks.length)
+                blocks = Arrays.copyOf(blocks, 2 * blocks.length);
+            blocks[block] = position;
+        }
+        buffer.putLong(board).putShort((short) (moves == null ? NONE : moves.length)).put(packed);
+        position += 10 + packed.length;
+        count++;
+    }
+
+    /**
+     * Appends a configuration and its solution.
+     * A configuration that is not valid, or not like the others, is written as a board of 0 without a solution.
+     *
+     * @param config   the configuration
+     * @param solution its solution, or {@code null} if it has none
+     * @throws IOException if writing fails
+     */
+    public void write(Configuration config, Solution solution) throws IOException
+    {
+        long board;
+        try
+        {
+            board = BinaryConfigurationWriter.pack(config);
+            if (rows == 0)
+            {
+                rows = config.getRows();
+                cols = config.getColumns();
+            }
+            else if (rows != config.getRows() || cols != config.getColumns())
+                board = 0;
+        }
+        catch (Exception e)
+        {
+            board = 0;
+        }
+        write(board, board == 0 || solution == null ? null : solution.getMoves());
+    }
+
+    /**
+     * Getter for the number of records written so far.
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     *
+     * @throws IOException if writing fails
+     */
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the block table and the header, then closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            long table = position;
+            for (int i = 0; i < (count + BLOCK - 1) / BLOCK; i++)
+            {
+                if (buffer.remaining() < Long.BYTES)
+                    flush();
+                buffer.putLong(blocks[i]);
+            }
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).put((byte) rows).put((byte) cols)
+                    .putInt(BLOCK).putInt(0).putLong(count).putLong(table);
+            header.flip();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the string representation of this class
+     * */
+    @Override
+    public String toString()
+    {
+        return "Solution writer with " + count + " records";
+    }
+}
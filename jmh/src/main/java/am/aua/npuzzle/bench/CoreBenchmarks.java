@@ -0,0 +1,211 @@
+package am.aua.npuzzle.bench;
+
+import am.aua.npuzzle.core.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.*;
+
+/** The {@code CoreBenchmarks} class benchmarks the board operations of every {@code Tiles} implementation,
+ * the initialisation of boards from configurations and the loading of configuration stores of several sizes.
+ * <p>
+ * All the boards and stores come from {@code ConfigurationGenerator} with a fixed seed, so two runs measure exactly
+ * the same work. Build with {@code mvn package} and run, for example:
+ * {@code java -jar jmh/target/benchmarks.jar -rf json -rff results.json [regexp]}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CoreBenchmarks
+{
+    /** Seed of every random board. */
+    private static final long SEED = 20240501L;
+    /** Length of the random walk replayed by the move benchmark, before walking it back. */
+    private static final int WALK = 1024;
+
+    /** A board of one implementation and size, with a walk to replay on it. */
+    @State(Scope.Thread)
+    public static class Board
+    {
+        /** The {@code Tiles} implementation. */
+        @Param({"ArrayTiles", "MatrixTiles", "LongTiles"})
+        public String impl;
+        /** Number of rows and columns. */
+        @Param({"3", "4"})
+        public int size;
+
+        String data;
+        Tiles tiles;
+        Tiles moving;
+        Tiles.Direction[] walk;
+        int next;
+        int cell;
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            data = new ConfigurationGenerator(size, size, SEED).stream(1, -1).findFirst().orElseThrow().getData();
+            tiles = create(data);
+            moving = create(data);
+            walk = walk(create(data), new SplittableRandom(SEED - size));
+        }
+
+        Tiles create(String format)
+        {
+            switch (impl)
+            {
+                case "ArrayTiles": return new ArrayTiles(format);
+                case "MatrixTiles": return new MatrixTiles(format);
+                case "LongTiles": return new LongTiles(format);
+                default: throw new IllegalArgumentException(impl);
+            }
+        }
+
+        Tiles copy()
+        {
+            if (tiles instanceof ArrayTiles)
+                return new ArrayTiles((ArrayTiles) tiles);
+            if (tiles instanceof MatrixTiles)
+                return new MatrixTiles((MatrixTiles) tiles);
+            return new LongTiles((LongTiles) tiles);
+        }
+    }
+
+    /** A text store and a binary store of the same boards. */
+    @State(Scope.Benchmark)
+    public static class Store
+    {
+        /** Number of configurations. */
+        @Param({"1000", "10000", "100000"})
+        public int lines;
+
+        Path text;
+        Path binary;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException
+        {
+            ConfigurationGenerator generator = new ConfigurationGenerator(4, 4, SEED + lines);
+            text = Files.createTempFile("npuzzle-bench", ".txt");
+            binary = Files.createTempFile("npuzzle-bench", ".npzb");
+            generator.writeText(text, lines, -1);
+            generator.writeBinary(binary, lines, -1);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException
+        {
+            Files.deleteIfExists(text);
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    @Benchmark
+    public void move(Board b)
+    {
+        b.moving.move(b.walk[b.next]);
+        b.next = b.next + 1 == b.walk.length ? 0 : b.next + 1;
+    }
+
+    @Benchmark
+    public byte getTile(Board b)
+    {
+        int c = b.cell;
+        b.cell = c + 1 == b.size * b.size ? 0 : c + 1;
+        return b.tiles.getTile(c / b.size, c % b.size);
+    }
+
+    @Benchmark
+    public int legalMoves(Board b)
+    {
+        return b.tiles.legalMoves();
+    }
+
+    @Benchmark
+    public boolean isSolved(Board b)
+    {
+        return b.tiles.isSolved();
+    }
+
+    @Benchmark
+    public boolean isSolvable(Board b)
+    {
+        return b.tiles.isSolvable();
+    }
+
+    @Benchmark
+    public Object cloneTiles(Board b)
+    {
+        return b.tiles.clone();
+    }
+
+    @Benchmark
+    public Tiles copyConstructor(Board b)
+    {
+        return b.copy();
+    }
+
+    @Benchmark
+    public Tiles initialise(Board b) throws Exception
+    {
+        new Configuration(b.data).initialise(b.tiles);
+        return b.tiles;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int storeLoad(Store s) throws IOException
+    {
+        return new ConfigurationStore(s.text.toString()).size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long storeStream(Store s) throws IOException
+    {
+        try (Stream<Configuration> configs = ConfigurationStore.stream(s.text.toString()))
+        {
+            return configs.count();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void binaryScan(Store s, Blackhole bh) throws IOException
+    {
+        try (BinaryConfigurationReader reader = new BinaryConfigurationReader(s.binary))
+        {
+            for (long i = 0; i < reader.size(); i++)
+                bh.consume(reader.getPacked(i));
+        }
+    }
+
+    /** Makes a random walk of legal moves followed by the moves taking it back,
+     * so replaying it in a loop keeps the board near its start.
+     *
+     * @param board  the start of the walk, moved
+     * @param random the source of randomness
+     * @return the moves
+     */
+    private static Tiles.Direction[] walk(Tiles board, SplittableRandom random)
+    {
+        Tiles.Direction[] walk = new Tiles.Direction[2 * WALK];
+        Tiles.Direction[] all = Tiles.Direction.values();
+        for (int i = 0; i < WALK; )
+        {
+            Tiles.Direction d = all[random.nextInt(all.length)];
+            if (board.tryMove(d))
+                walk[i++] = d;
+        }
+        for (int i = 0; i < WALK; i++)
+            walk[WALK + i] = walk[WALK - 1 - i].opposite();
+        return walk;
+    }
+}